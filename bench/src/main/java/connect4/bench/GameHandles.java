@@ -0,0 +1,116 @@
+package connect4.bench;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * GameHandles.java Authors: Jeff Wiederkehr and Chris Herrera
+ *
+ * The game classes live in the default package, which JMH does not allow for benchmark classes and which a named
+ * package can't import. This class looks the game classes up by name once and keeps method handles to their hot
+ * paths in static final fields, which the JIT treats as constants and inlines like a direct call.
+ */
+final class GameHandles {
+    static final Class<?> MODEL = load("Connect4Model");
+    static final Class<?> MESSAGE = load("Connect4MoveMessage");
+    static final Class<?> PROTOCOL = load("Connect4Protocol");
+    static final MethodHandle NEW_MODEL = constructor(MODEL);
+    static final MethodHandle UPDATE_CIRCLE = method(MODEL, "updateCircle", void.class, int.class, int.class);
+    static final MethodHandle UPDATE_CIRCLE_AI = method(MODEL, "updateCircleAI", int.class, int.class);
+    static final MethodHandle FIND_ROW = method(MODEL, "findRow", int.class, int.class);
+    static final MethodHandle IS_GAME_OVER = method(MODEL, "isGameOver", boolean.class);
+    static final MethodHandle NEW_GAME_RESET = method(MODEL, "newGameReset", void.class);
+    static final MethodHandle NEW_MESSAGE = constructor(MESSAGE, int.class, int.class, int.class);
+    static final MethodHandle GET_COLUMN = method(MESSAGE, "getColumn", int.class);
+    static final MethodHandle NEW_PROTOCOL = constructor(PROTOCOL, InputStream.class, OutputStream.class);
+    static final MethodHandle WRITE_MOVE = method(PROTOCOL, "writeMove", void.class, int.class, int.class);
+    static final MethodHandle READ = method(PROTOCOL, "read", int.class);
+    static final MethodHandle READ_COLUMN = method(PROTOCOL, "getColumn", int.class);
+
+    private GameHandles() {
+    }
+
+    /**
+     * Create a new Connect4Model
+     *
+     * @return - Object the model
+     */
+    static Object newModel() {
+        try {
+            return NEW_MODEL.invokeExact();
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Drop circles into a model, alternating between yellow and red starting with yellow
+     *
+     * @param model   the model to play on
+     * @param columns one digit per column to play
+     */
+    static void play(Object model, String columns) {
+        try {
+            int color = 1;
+            for (int i = 0; i < columns.length(); i++) {
+                UPDATE_CIRCLE.invokeExact(model, columns.charAt(i) - '0', color);
+                color = 3 - color;
+            }
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Load a game class from the default package
+     *
+     * @param name simple name of the class
+     * @return - Class the loaded class
+     */
+    static Class<?> load(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Game class " + name + " is not on the class path", e);
+        }
+    }
+
+    /**
+     * Find a method, private or not, and adapt it to take the receiver as an Object
+     *
+     * @param owner      class declaring the method
+     * @param name       name of the method
+     * @param returnType return type of the method
+     * @param parameters parameter types of the method
+     * @return - MethodHandle taking the receiver as Object followed by the parameters
+     */
+    static MethodHandle method(Class<?> owner, String name, Class<?> returnType, Class<?>... parameters) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(owner, MethodHandles.lookup());
+            MethodHandle handle = lookup.findVirtual(owner, name, MethodType.methodType(returnType, parameters));
+            return handle.asType(handle.type().changeParameterType(0, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Find a constructor and adapt it to return Object
+     *
+     * @param owner      class to construct
+     * @param parameters parameter types of the constructor
+     * @return - MethodHandle returning the new object as Object
+     */
+    static MethodHandle constructor(Class<?> owner, Class<?>... parameters) {
+        try {
+            MethodHandle handle = MethodHandles.lookup().findConstructor(owner,
+                    MethodType.methodType(void.class, parameters));
+            return handle.asType(handle.type().changeReturnType(Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
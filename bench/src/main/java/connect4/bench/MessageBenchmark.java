@@ -0,0 +1,211 @@
+package connect4.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MessageBenchmark.java Authors: Jeff Wiederkehr and Chris Herrera
+ *
+ * Benchmarks of sending a move between two controllers. The serialization benchmarks send a Connect4MoveMessage
+ * through an ObjectOutputStream and back through an ObjectInputStream, the way moves were sent before
+ * Connect4Protocol. The first message on a connection also carries the stream header and the class descriptor, the
+ * messages after it only a back reference to the descriptor, so both cases are measured. The binary benchmark sends
+ * the same move with Connect4Protocol on an open connection.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MessageBenchmark {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+    private Object message;
+
+    /**
+     * Create the message that is sent
+     *
+     * @throws Throwable if the message can't be created
+     */
+    @Setup
+    public void setUp() throws Throwable {
+        message = GameHandles.NEW_MESSAGE.invokeExact(-1, 3, 1);
+    }
+
+    /**
+     * Write one message on a new stream and read it back, like the first move of a connection
+     *
+     * @return the column read back so the round trip is not optimized away
+     * @throws Throwable if serialization fails
+     */
+    @Benchmark
+    public int firstMessageRoundTrip() throws Throwable {
+        bytes.reset();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(message);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (int) GameHandles.GET_COLUMN.invokeExact(in.readObject());
+        }
+    }
+
+    /**
+     * Write a message on a stream that already sent one and read it back, like every later move of a connection.
+     * The stream is reset between messages so it does not keep a reference to every message ever sent
+     *
+     * @param stream the open connection
+     * @return the column read back so the round trip is not optimized away
+     * @throws Throwable if serialization fails
+     */
+    @Benchmark
+    public int nextMessageRoundTrip(Connection stream) throws Throwable {
+        return stream.roundTrip(message);
+    }
+
+    /**
+     * Write a move with the binary protocol on an open connection and read it back
+     *
+     * @param stream the open connection
+     * @return the column read back so the round trip is not optimized away
+     * @throws Throwable if the protocol fails
+     */
+    @Benchmark
+    public int binaryMessageRoundTrip(BinaryConnection stream) throws Throwable {
+        return stream.roundTrip(3, 1);
+    }
+
+    /**
+     * A Connect4Protocol that writes to a buffer and reads back from it, with the header already exchanged
+     */
+    @State(Scope.Thread)
+    public static class BinaryConnection {
+        private static final int MOVE = 1;
+        private final Pipe pipe = new Pipe();
+        private Object protocol;
+
+        /**
+         * Open the protocol and send one move so the header has been read
+         *
+         * @throws Throwable if the protocol fails
+         */
+        @Setup
+        public void setUp() throws Throwable {
+            protocol = GameHandles.NEW_PROTOCOL.invokeExact(pipe.input(), (OutputStream) pipe);
+            roundTrip(3, 1);
+        }
+
+        /**
+         * Send a move and read it back
+         *
+         * @param column the column of the move
+         * @param color  the color of the move
+         * @return - int column read back
+         * @throws Throwable if the protocol fails
+         */
+        int roundTrip(int column, int color) throws Throwable {
+            GameHandles.WRITE_MOVE.invokeExact(protocol, column, color);
+            if ((int) GameHandles.READ.invokeExact(protocol) != MOVE)
+                throw new IllegalStateException("Expected a move");
+            int read = (int) GameHandles.READ_COLUMN.invokeExact(protocol);
+            pipe.clear();
+            return read;
+        }
+    }
+
+    /**
+     * An ObjectOutputStream and ObjectInputStream that stay open across messages and share one buffer
+     */
+    @State(Scope.Thread)
+    public static class Connection {
+        private final Pipe pipe = new Pipe();
+        private ObjectOutputStream out;
+        private ObjectInputStream in;
+
+        /**
+         * Open both streams and send one message so the class descriptor has been written
+         *
+         * @throws Throwable if serialization fails
+         */
+        @Setup
+        public void setUp() throws Throwable {
+            out = new ObjectOutputStream(pipe);
+            out.flush();
+            in = new ObjectInputStream(pipe.input());
+            roundTrip(GameHandles.NEW_MESSAGE.invokeExact(-1, 3, 1));
+        }
+
+        /**
+         * Send a message and read it back
+         *
+         * @param message the message to send
+         * @return - int column read back
+         * @throws Throwable if serialization fails
+         */
+        int roundTrip(Object message) throws Throwable {
+            out.writeObject(message);
+            out.reset();
+            out.flush();
+            int column = (int) GameHandles.GET_COLUMN.invokeExact(in.readObject());
+            pipe.clear();
+            return column;
+        }
+    }
+
+    /**
+     * A growable byte buffer that can be read back from the start, standing in for a socket
+     */
+    static final class Pipe extends ByteArrayOutputStream {
+        private int readPosition;
+
+        /**
+         * Drop the bytes that have been written and read
+         */
+        void clear() {
+            if (readPosition == count) {
+                reset();
+                readPosition = 0;
+            }
+        }
+
+        /**
+         * Returns a stream reading the bytes written to this pipe
+         *
+         * @return - InputStream over the written bytes
+         */
+        InputStream input() {
+            return new InputStream() {
+                @Override
+                public int read() {
+                    return readPosition < count ? buf[readPosition++] & 0xFF : -1;
+                }
+
+                @Override
+                public int read(byte[] target, int offset, int length) throws IOException {
+                    if (readPosition >= count)
+                        return -1;
+                    int read = Math.min(length, count - readPosition);
+                    System.arraycopy(buf, readPosition, target, offset, read);
+                    readPosition += read;
+                    return read;
+                }
+            };
+        }
+    }
+}
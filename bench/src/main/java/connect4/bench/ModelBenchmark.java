@@ -0,0 +1,116 @@
+package connect4.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ModelBenchmark.java Authors: Jeff Wiederkehr and Chris Herrera
+ *
+ * Benchmarks of the Connect4Model hot paths. Moves are measured by replaying a fixed 20 move opening followed by a
+ * reset, so every invocation starts from the same empty board, and the time is reported per move. The reads are
+ * measured on the position after that opening, which has no winner yet.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ModelBenchmark {
+    static final String OPENING = "33333114444234222522";
+    private static final int OPENING_MOVES = 20;
+    private Object empty;
+    private Object midgame;
+
+    /**
+     * Create the models used by the benchmarks
+     */
+    @Setup
+    public void setUp() {
+        empty = GameHandles.newModel();
+        midgame = GameHandles.newModel();
+        GameHandles.play(midgame, OPENING);
+    }
+
+    /**
+     * Replay the opening with updateCircle and reset the board, reported per move
+     *
+     * @throws Throwable if the model throws
+     */
+    @Benchmark
+    @OperationsPerInvocation(OPENING_MOVES)
+    public void updateCircle() throws Throwable {
+        int color = 1;
+        for (int i = 0; i < OPENING_MOVES; i++) {
+            GameHandles.UPDATE_CIRCLE.invokeExact(empty, OPENING.charAt(i) - '0', color);
+            color = 3 - color;
+        }
+        GameHandles.NEW_GAME_RESET.invokeExact(empty);
+    }
+
+    /**
+     * Play 20 random moves with updateCircleAI and reset the board, reported per move
+     *
+     * @return the last column played so the moves are not optimized away
+     * @throws Throwable if the model throws
+     */
+    @Benchmark
+    @OperationsPerInvocation(OPENING_MOVES)
+    public int updateCircleAI() throws Throwable {
+        int color = 1;
+        int column = 0;
+        for (int i = 0; i < OPENING_MOVES; i++) {
+            column += (int) GameHandles.UPDATE_CIRCLE_AI.invokeExact(empty, color);
+            color = 3 - color;
+        }
+        GameHandles.NEW_GAME_RESET.invokeExact(empty);
+        return column;
+    }
+
+    /**
+     * Reset a board that is already empty
+     *
+     * @throws Throwable if the model throws
+     */
+    @Benchmark
+    public void newGameReset() throws Throwable {
+        GameHandles.NEW_GAME_RESET.invokeExact(empty);
+    }
+
+    /**
+     * Find the open row of every column of the midgame position, reported per column
+     *
+     * @return the sum of the rows so the lookups are not optimized away
+     * @throws Throwable if the model throws
+     */
+    @Benchmark
+    @OperationsPerInvocation(7)
+    public int findRow() throws Throwable {
+        int rows = 0;
+        for (int column = 0; column < 7; column++)
+            rows += (int) GameHandles.FIND_ROW.invokeExact(midgame, column);
+        return rows;
+    }
+
+    /**
+     * Check the midgame position for a winner
+     *
+     * @return the result so the check is not optimized away
+     * @throws Throwable if the model throws
+     */
+    @Benchmark
+    public boolean isGameOver() throws Throwable {
+        return (boolean) GameHandles.IS_GAME_OVER.invokeExact(midgame);
+    }
+}
@@ -0,0 +1,110 @@
+package connect4.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SearchBenchmark.java Authors: Jeff Wiederkehr and Chris Herrera
+ *
+ * Benchmarks of a single computer move on the midgame position of ModelBenchmark, with the alpha-beta search at depth
+ * 8 and 12 and with Monte Carlo Tree Search at 10000 playouts. Both engines run on one thread so the
+ * numbers are comparable between machines with a different number of cores. The transposition table is cleared
+ * outside the measured time before every move so every move is searched from scratch.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SearchBenchmark {
+    private static final Class<?> SEARCH = GameHandles.load("Connect4Search");
+    private static final Class<?> TABLE = GameHandles.load("Connect4TranspositionTable");
+    private static final Class<?> MCTS = GameHandles.load("Connect4MCTS");
+    private static final MethodHandle NEW_TABLE = GameHandles.constructor(TABLE, int.class);
+    private static final MethodHandle NEW_SEARCH = GameHandles.constructor(SEARCH, int.class, TABLE);
+    private static final MethodHandle NEW_MCTS = GameHandles.constructor(MCTS);
+    private static final MethodHandle CLEAR = GameHandles.method(TABLE, "clear", void.class);
+    private static final MethodHandle SET_PLAYOUTS = GameHandles.method(MCTS, "setPlayouts", void.class, int.class);
+    private static final MethodHandle SEARCH_MOVE = GameHandles.method(SEARCH, "bestMove", int.class,
+            GameHandles.MODEL, int.class);
+    private static final MethodHandle MCTS_MOVE = GameHandles.method(MCTS, "bestMove", int.class, GameHandles.MODEL,
+            int.class);
+
+    private Object model;
+    private Object table;
+    private Object shallowSearch;
+    private Object deepSearch;
+    private Object mcts;
+
+    /**
+     * Create the engines and the midgame position
+     *
+     * @throws Throwable if an engine can't be created
+     */
+    @Setup
+    public void setUp() throws Throwable {
+        model = GameHandles.newModel();
+        GameHandles.play(model, ModelBenchmark.OPENING);
+        table = NEW_TABLE.invoke(16);
+        shallowSearch = NEW_SEARCH.invoke(8, table);
+        deepSearch = NEW_SEARCH.invoke(12, table);
+        mcts = NEW_MCTS.invokeExact();
+        SET_PLAYOUTS.invokeExact(mcts, 10_000);
+    }
+
+    /**
+     * Empty the transposition table before the next move
+     *
+     * @throws Throwable if the table throws
+     */
+    @Setup(Level.Invocation)
+    public void clearTable() throws Throwable {
+        CLEAR.invokeExact(table);
+    }
+
+    /**
+     * Search the midgame position for yellow to depth 8 with an empty table
+     *
+     * @return the column found so the search is not optimized away
+     * @throws Throwable if the search throws
+     */
+    @Benchmark
+    public int alphaBetaDepth8() throws Throwable {
+        return (int) SEARCH_MOVE.invoke(shallowSearch, model, 1);
+    }
+
+    /**
+     * Search the midgame position for yellow to depth 12 with an empty table
+     *
+     * @return the column found so the search is not optimized away
+     * @throws Throwable if the search throws
+     */
+    @Benchmark
+    public int alphaBetaDepth12() throws Throwable {
+        return (int) SEARCH_MOVE.invoke(deepSearch, model, 1);
+    }
+
+    /**
+     * Run 10000 playouts on the midgame position for yellow
+     *
+     * @return the column found so the playouts are not optimized away
+     * @throws Throwable if the engine throws
+     */
+    @Benchmark
+    public int mctsMove() throws Throwable {
+        return (int) MCTS_MOVE.invoke(mcts, model, 1);
+    }
+}
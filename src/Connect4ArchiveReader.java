@@ -0,0 +1,360 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Connect4ArchiveReader.java Authors: Jeff Wiederkehr and Chris Herrera
+ *
+ * This class streams the games of an archive written by Connect4ArchiveWriter. Only the footer and the block being
+ * read are memory mapped, so archives larger than one mapping can be read. next moves to the next game and makes its
+ * header available from the getters, and its moves are then taken one column at a time with nextMove or played onto a
+ * Connect4Model with play. Nothing is created per game or per move, and the moves of a game that are not taken are
+ * skipped without decoding them. seek jumps to any game through the block index.
+ *
+ * From the command line it scans the whole archive twice, once reading only the headers and once playing every game,
+ * and prints the results and how fast each scan went.
+ *
+ * Usage: java Connect4ArchiveReader [archive]
+ */
+public class Connect4ArchiveReader implements Closeable {
+    private final FileChannel channel;
+    private final String[] players;
+    // offset, first game and start millis of every block, and the footer offset after the last block
+    private final long[] index;
+    private final int blocks;
+    private final long games;
+    private final long footer;
+    private MappedByteBuffer block;
+    private int blockNumber = -1;
+    // bit position of the next bit in the block
+    private long position;
+    // number of the game whose header was read last, -1 before the first
+    private long game = -1;
+    private int movesLeft = 0;
+    private int moveCount;
+    private int moveNumber;
+    private int result;
+    private int yellow;
+    private int red;
+    private long startMillis;
+    private long endMillis;
+
+    /**
+     * Open an archive and read its footer
+     *
+     * @param file the archive written by Connect4ArchiveWriter
+     * @throws IOException if the file can't be read or is not a closed archive
+     */
+    public Connect4ArchiveReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < Connect4ArchiveWriter.HEADER_BYTES + Connect4ArchiveWriter.TAIL_BYTES)
+                throw new IOException("Not an archive: " + file);
+            MappedByteBuffer tail = channel.map(FileChannel.MapMode.READ_ONLY, 0, Connect4ArchiveWriter.HEADER_BYTES);
+            if (tail.getInt(0) != Connect4ArchiveWriter.MAGIC || tail.getInt(4) != Connect4ArchiveWriter.VERSION)
+                throw new IOException("Not an archive: " + file);
+            tail = channel.map(FileChannel.MapMode.READ_ONLY, size - Connect4ArchiveWriter.TAIL_BYTES,
+                    Connect4ArchiveWriter.TAIL_BYTES);
+            footer = tail.getLong(0);
+            if (tail.getInt(Long.BYTES) != Connect4ArchiveWriter.MAGIC || footer < Connect4ArchiveWriter.HEADER_BYTES
+                    || footer > size - Connect4ArchiveWriter.TAIL_BYTES)
+                throw new IOException("Archive was not closed: " + file);
+            MappedByteBuffer end = channel.map(FileChannel.MapMode.READ_ONLY, footer,
+                    size - Connect4ArchiveWriter.TAIL_BYTES - footer);
+            players = new String[end.getInt()];
+            for (int i = 0; i < players.length; i++) {
+                byte[] name = new byte[end.getShort() & 0xFFFF];
+                end.get(name);
+                players[i] = new String(name, StandardCharsets.UTF_8);
+            }
+            blocks = end.getInt();
+            index = new long[blocks * 3 + 1];
+            for (int i = 0; i < blocks * 3; i++)
+                index[i] = end.getLong();
+            index[blocks * 3] = footer;
+            games = end.getLong();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e instanceof IOException ? (IOException) e : new IOException("Archive is damaged: " + file);
+        }
+    }
+
+    /**
+     * Scan an archive from the command line
+     *
+     * @param args the archive, Connect4ArchiveWriter.DEFAULT_FILE if missing
+     */
+    public static void main(String[] args) {
+        Path file = Paths.get(args.length > 0 ? args[0] : Connect4ArchiveWriter.DEFAULT_FILE);
+        try (Connect4ArchiveReader reader = new Connect4ArchiveReader(file)) {
+            // indexed by result, IN_PROGRESS, yellow, red and DRAW
+            long[] results = new long[4];
+            long begin = System.nanoTime();
+            while (reader.next())
+                results[reader.getResult()]++;
+            double headers = (System.nanoTime() - begin) / 1e9;
+            Connect4Model model = new Connect4Model();
+            long moves = 0;
+            reader.seek(0);
+            begin = System.nanoTime();
+            while (reader.next()) {
+                reader.play(model);
+                moves += reader.getMoveCount();
+            }
+            double played = (System.nanoTime() - begin) / 1e9;
+            System.out.printf("%d games, %d moves, %d players, %d blocks%n", reader.getGameCount(), moves,
+                    reader.players.length, reader.blocks);
+            System.out.printf("headers scanned in %.3f s, %.0f games/s%n", headers,
+                    reader.getGameCount() / Math.max(headers, 1e-9));
+            System.out.printf("games played in %.3f s, %.0f games/s%n", played,
+                    reader.getGameCount() / Math.max(played, 1e-9));
+            System.out.printf("yellow won %d, red won %d, draws %d, unfinished %d%n", results[1], results[2],
+                    results[3], results[0]);
+        } catch (IOException e) {
+            System.err.println("Something went wrong with the archive! " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the number of games in the archive
+     *
+     * @return - long number of games
+     */
+    public long getGameCount() {
+        return games;
+    }
+
+    /**
+     * Returns the name of a player
+     *
+     * @param player number of the player from getYellow or getRed
+     * @return - String name the player was written with
+     */
+    public String getPlayerName(int player) {
+        return players[player];
+    }
+
+    /**
+     * Position the reader so the next call to next reads the given game. Only the block of the game is decoded
+     *
+     * @param target number of the game, from 0
+     * @throws IOException              if the block can't be read
+     * @throws IllegalArgumentException if there is no such game
+     */
+    public void seek(long target) throws IOException, IllegalArgumentException {
+        if (target < 0 || target > games)
+            throw new IllegalArgumentException("There is no game " + target + " in the archive of " + games +
+                    " games");
+        int low = 0;
+        int high = blocks - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (index[middle * 3 + 1] <= target)
+                low = middle;
+            else
+                high = middle - 1;
+        }
+        game = target - 1;
+        movesLeft = 0;
+        if (blocks == 0)
+            return;
+        startBlock(low);
+        game = index[low * 3 + 1] - 1;
+        while (game < target - 1)
+            next();
+    }
+
+    /**
+     * Read the header of the next game, skipping the moves of the current game that were not taken
+     *
+     * @return - boolean true if there is a next game, false at the end of the archive
+     * @throws IOException if the next block can't be read
+     */
+    public boolean next() throws IOException {
+        if (game + 1 >= games)
+            return false;
+        position += (long) movesLeft * Connect4ArchiveWriter.MOVE_BITS;
+        game++;
+        if (blockNumber + 1 < blocks && index[(blockNumber + 1) * 3 + 1] == game)
+            startBlock(blockNumber + 1);
+        moveCount = (int) getBits(8);
+        result = (int) getBits(2);
+        yellow = (int) getNumber();
+        red = (int) getNumber();
+        startMillis += unzigzag(getNumber());
+        endMillis = startMillis + unzigzag(getNumber());
+        movesLeft = moveCount;
+        moveNumber = 0;
+        return true;
+    }
+
+    /**
+     * Returns the column of the next move of the current game
+     *
+     * @return - int column of the move, -1 after the last move
+     */
+    public int nextMove() {
+        if (movesLeft == 0)
+            return -1;
+        movesLeft--;
+        moveNumber++;
+        return (int) getBits(Connect4ArchiveWriter.MOVE_BITS);
+    }
+
+    /**
+     * Play the moves of the current game that were not taken yet onto a model, without telling its listeners. The
+     * model is reset first if no move was taken, so it ends up in the final position of the game
+     *
+     * @param model the model to play on
+     * @throws IOException if a move can't be played, which means the archive is damaged
+     */
+    public void play(Connect4Model model) throws IOException {
+        if (moveNumber == 0)
+            model.newGameReset();
+        while (movesLeft > 0) {
+            int color = (moveNumber & 1) == 0 ? Connect4MoveMessage.YELLOW : Connect4MoveMessage.RED;
+            int column = nextMove();
+            try {
+                model.play(column, color);
+            } catch (RuntimeException e) {
+                throw new IOException("Game " + game + " has an illegal move " + column);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of the current game
+     *
+     * @return - long game number, from 0
+     */
+    public long getGame() {
+        return game;
+    }
+
+    /**
+     * Returns the number of moves of the current game
+     *
+     * @return - int number of moves
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Returns the result of the current game
+     *
+     * @return - int Connect4Model.IN_PROGRESS, the color of the winner or Connect4Model.DRAW
+     */
+    public int getResult() {
+        return result;
+    }
+
+    /**
+     * Returns the yellow player of the current game
+     *
+     * @return - int player number for getPlayerName
+     */
+    public int getYellow() {
+        return yellow;
+    }
+
+    /**
+     * Returns the red player of the current game
+     *
+     * @return - int player number for getPlayerName
+     */
+    public int getRed() {
+        return red;
+    }
+
+    /**
+     * Returns when the current game started
+     *
+     * @return - long milliseconds since the epoch
+     */
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * Returns when the current game ended
+     *
+     * @return - long milliseconds since the epoch
+     */
+    public long getEndMillis() {
+        return endMillis;
+    }
+
+    /**
+     * Close the file
+     *
+     * @throws IOException if the file can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Map a block and go to its first bit
+     *
+     * @param number the number of the block
+     * @throws IOException if the block can't be mapped
+     */
+    private void startBlock(int number) throws IOException {
+        long offset = index[number * 3];
+        block = channel.map(FileChannel.MapMode.READ_ONLY, offset, index[(number + 1) * 3] - offset);
+        blockNumber = number;
+        position = 0;
+        startMillis = index[number * 3 + 2];
+    }
+
+    /**
+     * Take a number of varying size written by Connect4ArchiveWriter.putNumber
+     *
+     * @return - long the number
+     */
+    private long getNumber() {
+        long value = 0;
+        int shift = 0;
+        long group;
+        do {
+            group = getBits(8);
+            value |= (group & 0x7F) << shift;
+            shift += 7;
+        } while ((group & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Take the next bits of the block, most significant first
+     *
+     * @param count number of bits, at most 8
+     * @return - long the bits as a number
+     */
+    private long getBits(int count) {
+        int byteIndex = (int) (position >>> 3);
+        int offset = (int) (position & 7);
+        int word = (block.get(byteIndex) & 0xFF) << 8;
+        if (offset + count > 8)
+            word |= block.get(byteIndex + 1) & 0xFF;
+        position += count;
+        return (word >>> (16 - offset - count)) & ((1 << count) - 1);
+    }
+
+    /**
+     * Undo Connect4ArchiveWriter.zigzag
+     *
+     * @param value the zigzag encoded number
+     * @return - long the signed number
+     */
+    private static long unzigzag(long value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+}
@@ -0,0 +1,310 @@
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Connect4ArchiveWriter.java Authors: Jeff Wiederkehr and Chris Herrera
+ *
+ * This class writes whole games to a compact archive read by Connect4ArchiveReader. Games are streamed to the file as
+ * they are written and packed as bits: a small header per game with the players, result, start time and length, then
+ * 3 bits per move for its column. Yellow always moves first and the colors alternate, so a move needs no color. A
+ * typical game takes around 17 bytes, where a Connect4MoveMessage per move takes hundreds.
+ *
+ * The games are grouped in blocks of GAMES_PER_BLOCK games that start on a byte boundary. When the archive is closed
+ * a footer is added with the names of the players and an index with the offset, first game and start time of every
+ * block, so a reader can jump to any game by decoding at most one block.
+ *
+ * File layout, numbers big endian:
+ *
+ * header - int MAGIC, int VERSION
+ * blocks - the games of every block as a bit stream, most significant bit first
+ * footer - int players, every name as a short length and UTF-8 bytes, int blocks, every block as long offset, long
+ *          first game and long start millis, long games
+ * tail   - long offset of the footer, int MAGIC
+ *
+ * A game is 8 bits of move count, 2 bits of result, the yellow and red player numbers, the start time as the
+ * difference to the start of the game before it in the block, or to the start of the block, and the length of the
+ * game in milliseconds, followed by 3 bits per move. Numbers of varying size are written 7 bits at a time, each group
+ * preceded by a bit that says whether another group follows, and the time differences are zigzag encoded so games
+ * that are written out of order still fit.
+ *
+ * Usage: java Connect4ArchiveWriter [journal] [archive] converts a Connect4Journal into an archive
+ */
+public class Connect4ArchiveWriter implements Closeable {
+    public static final String DEFAULT_FILE = "connect4.archive";
+    static final int MAGIC = 0x43344152;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 8;
+    static final int TAIL_BYTES = Long.BYTES + Integer.BYTES;
+    static final int GAMES_PER_BLOCK = 4096;
+    static final int MOVE_BITS = 3;
+    static final int MAX_MOVES = 255;
+    private final DataOutputStream out;
+    private final Map<String, Integer> playerNumbers = new HashMap<>();
+    private final List<String> players = new ArrayList<>();
+    // offset, first game and start millis of every block
+    private long[] index = new long[3 * 64];
+    private int blocks = 0;
+    private long games = 0;
+    private long previousStart;
+    // bits waiting to be written, the oldest in the highest of the count lowest bits
+    private long bits = 0;
+    private int bitCount = 0;
+    // full bytes of the bit stream are collected here and written to the file in large pieces
+    private final byte[] buffer = new byte[1 << 16];
+    private int buffered = 0;
+    private long written = 0;
+
+    /**
+     * Create an archive in the given file, replacing a file that is already there
+     *
+     * @param file the archive file
+     * @throws IOException if the file can't be written
+     */
+    public Connect4ArchiveWriter(Path file) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        written = HEADER_BYTES;
+    }
+
+    /**
+     * Convert the games of a journal into an archive from the command line
+     *
+     * @param args the journal, Connect4Journal.DEFAULT_FILE if missing, and the archive, DEFAULT_FILE if missing
+     */
+    public static void main(String[] args) {
+        Path journal = Paths.get(args.length > 0 ? args[0] : Connect4Journal.DEFAULT_FILE);
+        Path file = Paths.get(args.length > 1 ? args[1] : DEFAULT_FILE);
+        long begin = System.nanoTime();
+        long games;
+        int skipped = 0;
+        try (Connect4ArchiveWriter writer = new Connect4ArchiveWriter(file)) {
+            Connect4Replay replay = new Connect4Replay(journal);
+            Connect4Model model = new Connect4Model();
+            int player = writer.player("journal");
+            int[] moves = new int[MAX_MOVES];
+            for (int game = 0; game < replay.getGameCount(); game++) {
+                // a game on another board may not fit in moves, so it is skipped before its moves are copied
+                if (!replay.getGeometry(game).equals(Connect4Geometry.STANDARD)
+                        || replay.getMoveCount(game) > MAX_MOVES) {
+                    skipped++;
+                    continue;
+                }
+                int count = replay.getMoves(game, moves);
+                if (!toColumns(moves, count)) {
+                    skipped++;
+                    continue;
+                }
+                replay.replay(game, model);
+                long start = replay.getStartMillis(game);
+                writer.writeGame(player, player, model.getGameResult(), start, start, moves, count);
+            }
+            games = writer.getGameCount();
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Something went wrong with the archive! " + e.getMessage());
+            return;
+        }
+        try {
+            // the size is only final once the writer has added the footer and closed the file
+            System.out.printf("Wrote %d games of %s to %s, %d bytes, in %.1f s, skipped %d games that are not on " +
+                    "the standard board or don't alternate from yellow%n", games, journal, file, Files.size(file),
+                    (System.nanoTime() - begin) / 1e9, skipped);
+        } catch (IOException e) {
+            System.err.println("Something went wrong with the archive! " + e.getMessage());
+        }
+    }
+
+    /**
+     * Turn the moves of a journal game into columns in place if the colors alternate starting with yellow
+     *
+     * @param moves the moves as column << 2 | color
+     * @param count number of moves
+     * @return - boolean true if the moves are now columns, false if the game can't be archived
+     */
+    private static boolean toColumns(int[] moves, int count) {
+        for (int i = 0; i < count; i++) {
+            int color = (i & 1) == 0 ? Connect4MoveMessage.YELLOW : Connect4MoveMessage.RED;
+            if ((moves[i] & 3) != color || moves[i] >>> 2 >= 1 << MOVE_BITS)
+                return false;
+        }
+        for (int i = 0; i < count; i++)
+            moves[i] >>>= 2;
+        return true;
+    }
+
+    /**
+     * Returns the number the archive stores a player as, adding the player the first time it is seen
+     *
+     * @param name the name of the player
+     * @return - int number of the player, used by writeGame
+     */
+    public int player(String name) {
+        Integer number = playerNumbers.get(name);
+        if (number == null) {
+            number = players.size();
+            playerNumbers.put(name, number);
+            players.add(name);
+        }
+        return number;
+    }
+
+    /**
+     * Append a game. Yellow played the first column and the colors alternate
+     *
+     * @param yellow      number of the yellow player from player
+     * @param red         number of the red player from player
+     * @param result      Connect4Model.IN_PROGRESS, the color of the winner or Connect4Model.DRAW
+     * @param startMillis when the game started in milliseconds since the epoch
+     * @param endMillis   when the game ended in milliseconds since the epoch
+     * @param columns     the column of every move in the order they were played
+     * @param moves       the number of moves in columns
+     * @throws IOException              if the game can't be written
+     * @throws IllegalArgumentException if a player is unknown, a column does not fit 3 bits or there are more than
+     *                                  MAX_MOVES moves
+     */
+    public void writeGame(int yellow, int red, int result, long startMillis, long endMillis, int[] columns,
+                          int moves) throws IOException, IllegalArgumentException {
+        if (yellow < 0 || yellow >= players.size() || red < 0 || red >= players.size())
+            throw new IllegalArgumentException("Unknown player number " + Math.max(yellow, red));
+        if (moves < 0 || moves > MAX_MOVES)
+            throw new IllegalArgumentException("A game can have at most " + MAX_MOVES + " moves");
+        if (result < Connect4Model.IN_PROGRESS || result > Connect4Model.DRAW)
+            throw new IllegalArgumentException("Unknown result " + result);
+        for (int i = 0; i < moves; i++)
+            if (columns[i] < 0 || columns[i] >= 1 << MOVE_BITS)
+                throw new IllegalArgumentException("Column " + columns[i] + " does not fit the archive");
+        if (games % GAMES_PER_BLOCK == 0)
+            startBlock(startMillis);
+        putBits(moves, 8);
+        putBits(result, 2);
+        putNumber(yellow);
+        putNumber(red);
+        putNumber(zigzag(startMillis - previousStart));
+        putNumber(zigzag(endMillis - startMillis));
+        for (int i = 0; i < moves; i++)
+            putBits(columns[i], MOVE_BITS);
+        previousStart = startMillis;
+        games++;
+    }
+
+    /**
+     * Returns the number of games written
+     *
+     * @return - long games in the archive so far
+     */
+    public long getGameCount() {
+        return games;
+    }
+
+    /**
+     * Write the footer and close the file. The archive can only be read once it is closed
+     *
+     * @throws IOException if the footer can't be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (bitCount < 0)
+            return;
+        alignToByte();
+        out.write(buffer, 0, buffered);
+        long footer = written;
+        out.writeInt(players.size());
+        for (String name : players) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            out.writeShort(bytes.length);
+            out.write(bytes);
+        }
+        out.writeInt(blocks);
+        for (int i = 0; i < blocks * 3; i++)
+            out.writeLong(index[i]);
+        out.writeLong(games);
+        out.writeLong(footer);
+        out.writeInt(MAGIC);
+        out.close();
+        // a second close does nothing
+        bitCount = -1;
+    }
+
+    /**
+     * Start a new block on a byte boundary and add it to the index
+     *
+     * @param startMillis start of the first game of the block
+     * @throws IOException if the bits before it can't be written
+     */
+    private void startBlock(long startMillis) throws IOException {
+        alignToByte();
+        if (blocks * 3 == index.length)
+            index = Arrays.copyOf(index, index.length * 2);
+        index[blocks * 3] = written;
+        index[blocks * 3 + 1] = games;
+        index[blocks * 3 + 2] = startMillis;
+        blocks++;
+        previousStart = startMillis;
+    }
+
+    /**
+     * Append a number of varying size, 7 bits at a time with the lowest bits first
+     *
+     * @param value the number, treated as unsigned
+     * @throws IOException if the bits can't be written
+     */
+    private void putNumber(long value) throws IOException {
+        do {
+            long group = value & 0x7F;
+            value >>>= 7;
+            putBits((value != 0 ? 0x80 : 0) | group, 8);
+        } while (value != 0);
+    }
+
+    /**
+     * Append the lowest bits of a value, most significant first
+     *
+     * @param value the bits to append
+     * @param count number of bits, at most 8
+     * @throws IOException if full bytes can't be written
+     */
+    private void putBits(long value, int count) throws IOException {
+        bits = bits << count | (value & ((1L << count) - 1));
+        bitCount += count;
+        while (bitCount >= 8) {
+            bitCount -= 8;
+            if (buffered == buffer.length) {
+                out.write(buffer, 0, buffered);
+                buffered = 0;
+            }
+            buffer[buffered++] = (byte) (bits >>> bitCount);
+            written++;
+        }
+    }
+
+    /**
+     * Fill the last byte with zero bits so the next bits start a new byte
+     *
+     * @throws IOException if the byte can't be written
+     */
+    private void alignToByte() throws IOException {
+        if (bitCount > 0)
+            putBits(0, 8 - bitCount);
+    }
+
+    /**
+     * Map a signed number to an unsigned one so small negative numbers stay small
+     *
+     * @param value the signed number
+     * @return - long 0, -1, 1, -2, 2 ... as 0, 1, 2, 3, 4 ...
+     */
+    static long zigzag(long value) {
+        return value << 1 ^ value >> 63;
+    }
+}
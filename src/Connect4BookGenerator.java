@@ -0,0 +1,128 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Connect4BookGenerator.java Authors: Jeff Wiederkehr and Chris Herrera
+ *
+ * This class generates the opening book read by Connect4OpeningBook. It walks every position that can be reached from
+ * the empty board with fewer moves than the given ply, yellow moving first, and searches each one once to the given
+ * depth. A position whose mirror image was already searched is not searched or walked again, since the book stores
+ * both under one canonical hash. Positions where the game is already over are left out. The entries are then sorted
+ * and written in the book format. The book is only for the standard board, Connect4Geometry.STANDARD.
+ *
+ * Usage: java Connect4BookGenerator [file] [ply] [depth]
+ */
+public class Connect4BookGenerator {
+    public static final int DEFAULT_PLY = 6;
+    public static final int DEFAULT_DEPTH = 14;
+    private final Connect4Model model = new Connect4Model(Connect4Geometry.STANDARD);
+    private final Connect4Geometry geometry = model.getGeometry();
+    private final Connect4Search search;
+    private final Set<Long> seen = new HashSet<>();
+    private final int ply;
+    // canonical hash with the move of the canonical position in the low bits, so sorting the entries sorts by hash
+    private long[] entries = new long[1024];
+    private int count = 0;
+
+    /**
+     * Construct a generator for the given ply and search depth
+     *
+     * @param ply   the book holds every position with fewer moves than this
+     * @param depth number of moves every position is searched
+     */
+    public Connect4BookGenerator(int ply, int depth) {
+        this.ply = ply;
+        search = new Connect4Search(depth, new Connect4TranspositionTable(24));
+        search.setThreads(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Generate the book and write it to the given file
+     *
+     * @param args file, ply and depth, every argument is optional
+     * @throws IOException if the book can't be written
+     */
+    public static void main(String[] args) throws IOException {
+        Path file = Paths.get(args.length > 0 ? args[0] : Connect4OpeningBook.DEFAULT_FILE);
+        int ply = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PLY;
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_DEPTH;
+        long start = System.nanoTime();
+        Connect4BookGenerator generator = new Connect4BookGenerator(ply, depth);
+        generator.generate();
+        generator.write(file);
+        System.out.printf("Wrote %d positions to %s in %.1f s%n", generator.count, file,
+                (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Walk and search every position of the book
+     */
+    public void generate() {
+        visit(0, Connect4MoveMessage.YELLOW);
+    }
+
+    /**
+     * Search the current position if it was not seen before and walk every move that does not end the game
+     *
+     * @param moves number of moves played so far
+     * @param color the color to move
+     */
+    private void visit(int moves, int color) {
+        long own = model.getBoard(color);
+        long mask = model.getMask();
+        if (moves >= ply || !seen.add(model.getCanonicalHash()))
+            return;
+        int column = search.bestMove(model, color);
+        if (column == -1)
+            return;
+        add(model.getCanonicalHash(), model.isMirrored() ? geometry.getColumns() - 1 - column : column);
+        long winning = geometry.winningCells(own, mask);
+        for (int next = 0; next < geometry.getColumns(); next++) {
+            if (!model.canPlay(next) || (winning & geometry.columnMask(next) & geometry.possibleCells(mask)) != 0)
+                continue;
+            model.makeMove(next, color);
+            visit(moves + 1, 3 - color);
+            model.unmakeMove(next, color);
+        }
+    }
+
+    /**
+     * Add a position and its move to the entries
+     *
+     * @param hash   canonical hash of the position
+     * @param column column to play in the canonical position
+     */
+    private void add(long hash, int column) {
+        if (count == entries.length)
+            entries = Arrays.copyOf(entries, count * 2);
+        entries[count++] = (hash & ~Connect4OpeningBook.MOVE_BITS) | column;
+        if (count % 10000 == 0)
+            System.out.println(count + " positions searched");
+    }
+
+    /**
+     * Sort the entries and write them in the book format
+     *
+     * @param file where to write the book
+     * @throws IOException if the book can't be written
+     */
+    public void write(Path file) throws IOException {
+        long[] sorted = Arrays.copyOf(entries, count);
+        Arrays.sort(sorted);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(Connect4OpeningBook.MAGIC);
+            out.writeInt(Connect4OpeningBook.VERSION);
+            out.writeInt(count);
+            out.writeInt(ply);
+            for (long entry : sorted)
+                out.writeLong(entry);
+        }
+    }
+}
@@ -1,10 +1,14 @@
 import javafx.application.Platform;
 
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.nio.file.Paths;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * Connect4Controller.java Authors: Jeff Wiederkehr and Chris Herrera
@@ -13,39 +17,74 @@ import java.net.Socket;
  * client and server to connect. Also the controller acts as the go between for the model and view.
  */
 public class Connect4Controller {
+    public static final long DEFAULT_MOVE_TIME = 3000;
     private final Connect4Model model;
-    private Socket connection;
+    // runs the moves and messages of the connection threads on the thread that owns the model, Platform.runLater for
+    // the view
+    private final Executor dispatcher;
+    // created on the first computer move so human games never allocate the transposition table
+    private Connect4Search search;
+    private Connect4MCTS mcts;
+    private boolean useMCTS = false;
+    private int searchDepth = Connect4Search.DEFAULT_DEPTH;
+    private int searchThreads = Runtime.getRuntime().availableProcessors();
+    private long moveTime = DEFAULT_MOVE_TIME;
+    // runs the timed searches of startComputerTurn off the JavaFX thread
+    private ExecutorService searchExecutor;
+    // counts new games and taken back moves so a search that finishes after either does not play into the new position
+    private int gameNumber = 0;
+    private Connect4Transport connection;
     private int port;
     private String server;
-    private boolean isServer = false;
+    // yellow for the server and red for the client, unless Connect4Server says otherwise with a START message
+    private volatile int playerColor = Connect4MoveMessage.YELLOW;
     private boolean isConnected = false;
+    private boolean isComputer = false;
+    private boolean pondering = true;
+    // set when a ponder is started for the opponent's move, the reader stops it when the move arrives
+    private volatile boolean ponderRunning = false;
+    // one reader and one writer thread per connection, the writer sends the moves queued by sendMessage in order
+    private final BlockingQueue<Connect4MoveMessage> outbound = new LinkedBlockingQueue<>();
+    private Thread writer;
+    // true when this controller only watches a game through watch
+    private volatile boolean watching = false;
+    // created when the first spectator is added so games without spectators never encode moves for them
+    private volatile Connect4Spectators spectators;
 
-    ObjectOutputStream oos;
-    ObjectInputStream ois;
+    volatile Connect4Protocol protocol;
 
     /**
-     * Construct a Connect4Controller
+     * Construct a Connect4Controller whose network messages are handled on the JavaFX thread
      *
      * @param model The Connect4Model to associate with this Controller
      */
     public Connect4Controller(Connect4Model model) { // maybe pass the server and port here
+        this(model, Platform::runLater);
+    }
+
+    /**
+     * Construct a Connect4Controller whose network messages are handled by the given executor. Without a view there is
+     * no JavaFX thread, so two controllers that play each other in one process over a Connect4LoopbackTransport pass
+     * an executor of their own, for example Runnable::run to handle every message on the reader thread
+     *
+     * @param model      The Connect4Model to associate with this Controller
+     * @param dispatcher runs every change the connection makes to the model, in order
+     */
+    public Connect4Controller(Connect4Model model, Executor dispatcher) {
         this.model = model;
+        this.dispatcher = dispatcher;
     }
 
 
     /**
-     * Start a server side connection
+     * Start a server side connection. The listening socket is closed once the client has connected so the port can be
+     * used for the next game. A connection that is still open from an earlier game is closed first
      *
      */
     public void startServer() {
+        disconnect();
         try {
-            ServerSocket server = new ServerSocket(port);
-            connection = server.accept();
-            oos = new ObjectOutputStream(connection.getOutputStream());
-            ois = new ObjectInputStream(connection.getInputStream());
-            isServer = true;
-            isConnected = true;
-            model.setMyTurn(true);
+            connect(Connect4SocketTransport.accept(port), true);
         } catch (IOException e) {
             System.err.println("Something went wrong with the network! " + e.getMessage());
         }
@@ -54,45 +93,124 @@ public class Connect4Controller {
     
     /**
      * This method starts the connection for the client. The method connects to the active socket created by the the
-     * server. This is always ran after the server. The client also takes the message which contains the first move from
-     * the server and updates the clients state.
+     * server. This is always ran after the server. The client waits for the first move from the server, when the server
+     * is a Connect4Server the first message says which color the client plays instead. A connection that is still open
+     * from an earlier game is closed first
      */
     public void startClient() {
+        disconnect();
         try {
-            connection = new Socket(server, port);
-            isServer = false;
-            isConnected = true;
-            model.setMyTurn(false);
-            oos = new ObjectOutputStream(connection.getOutputStream());
-            ois = new ObjectInputStream(connection.getInputStream());
-            Thread t = new Thread(() -> {
-                try {
-                    Connect4MoveMessage otherMsg = (Connect4MoveMessage) ois.readObject();
-                    Platform.runLater(() -> {
-                        model.setMyTurn(true);
-                        model.updateCircle(otherMsg.getColumn(), otherMsg.getColor());
-                        model.flipServerTurn();
-                    });
-                } catch (IOException | ClassNotFoundException e) {
-                    System.err.println("Something went wrong with serialization: " + e.getMessage());
-                }
-            });
-            t.start();
+            connect(Connect4SocketTransport.connect(server, port), false);
         } catch (IOException e) {
             System.err.println("Something went wrong with the network! " + e.getMessage());
         }
     }
+
+    /**
+     * Play over an open transport, for example one end of a Connect4LoopbackTransport pair to play another controller
+     * in the same process. The side that plays the server is yellow and moves first. The client side asks for an
+     * opponent of its kind on our board with a JOIN, which a Connect4Server uses to pair it. A server player only
+     * checks the board of the JOIN and closes the connection when it differs from its own. A connection that is still
+     * open from an earlier game is closed first
+     *
+     * @param transport the connection to the other player
+     * @param isServer  true to play the server side, false to play the client side
+     * @throws IOException if the protocol header can't be sent
+     */
+    public void connect(Connect4Transport transport, boolean isServer) throws IOException {
+        disconnect();
+        connection = transport;
+        protocol = new Connect4Protocol(transport.getInputStream(), transport.getOutputStream());
+        if (!isServer)
+            protocol.writeJoin(Connect4Lobby.queueFor(isComputer, useMCTS, searchDepth), model.getGeometry());
+        playerColor = isServer ? Connect4MoveMessage.YELLOW : Connect4MoveMessage.RED;
+        isConnected = true;
+        watching = false;
+        model.setMyTurn(isServer);
+        startConnectionThreads();
+    }
+
+    /**
+     * Watch a game sent by the Connect4Spectators of another controller. Every move and new game is shown on our
+     * board, but it is never our turn and nothing is sent back. A connection that is still open is closed first
+     *
+     * @param transport the connection to the controller of the game
+     * @throws IOException if the protocol header can't be sent
+     */
+    public void watch(Connect4Transport transport) throws IOException {
+        disconnect();
+        connection = transport;
+        protocol = new Connect4Protocol(transport.getInputStream(), transport.getOutputStream());
+        isConnected = true;
+        watching = true;
+        model.setMyTurn(false);
+        startConnectionThreads();
+    }
+
+    /**
+     * Send every move of our games to a spectator, for example one end of a Connect4LoopbackTransport pair given to a
+     * controller that calls watch. The spectator first gets the moves of the current game. A slow spectator never
+     * holds up the moves sent to the other player
+     *
+     * @param transport the connection to the spectator
+     * @throws IOException if the connection can't be opened
+     */
+    public void addSpectator(Connect4Transport transport) throws IOException {
+        getSpectators().add(transport);
+    }
+
+    /**
+     * Accept spectators on the given port. Every spectator that connects is sent our games like addSpectator
+     *
+     * @param port the port to listen on, 0 for any free port
+     * @return - int the port spectators connect to
+     * @throws IOException if the port can't be opened
+     * @throws IllegalStateException if spectators are already accepted
+     */
+    public int acceptSpectators(int port) throws IOException, IllegalStateException {
+        return getSpectators().listen(port);
+    }
+
+    /**
+     * Returns the number of spectators watching our games
+     *
+     * @return - int number of spectators
+     */
+    public int getSpectatorCount() {
+        Connect4Spectators watchers = spectators;
+        return watchers == null ? 0 : watchers.getSpectatorCount();
+    }
+
+    /**
+     * Returns the spectators of our games and creates them on first use
+     *
+     * @return - Connect4Spectators that moves are sent to
+     */
+    private synchronized Connect4Spectators getSpectators() {
+        if (spectators == null)
+            spectators = new Connect4Spectators();
+        return spectators;
+    }
     
 
     /**
      * Check if the game is over
      *
-     * @return true if someone has won the game, false if the game should continue
+     * @return true if someone has won the game or the board is full, false if the game should continue
      */
     public boolean isGameOver() {
         return model.isGameOver();
     }
 
+    /**
+     * Returns the result of the game
+     *
+     * @return - int Connect4Model.IN_PROGRESS, the color of the winner or Connect4Model.DRAW
+     */
+    public int getGameResult() {
+        return model.getGameResult();
+    }
+
 
     /**
      * Drop a circle into the given column if space is available. If the column is full, an error message will be given
@@ -101,44 +219,450 @@ public class Connect4Controller {
      * @throws IllegalArgumentException to trigger an error message if the column is full
      */
     public void humanTurn(int column) throws IllegalArgumentException {
-        model.updateCircle(column, (isServer) ? Connect4MoveMessage.YELLOW : Connect4MoveMessage.RED);
-        Connect4MoveMessage msg = new Connect4MoveMessage(-1, column, (isServer) ? Connect4MoveMessage.YELLOW :
-                Connect4MoveMessage.RED);
+        model.updateCircle(column, playerColor);
+        Connect4MoveMessage msg = new Connect4MoveMessage(-1, column, playerColor);
         sendMessage(msg);
     }
 
     /**
-     * Drop a circle into a random legal column for the AI
+     * Take back our last move. Without a connection the move is taken back right away and it is our turn again. In a
+     * network game our last move can only be taken back before the opponent answered it, so an UNDO is sent to ask
+     * and the move is taken back when the opponent agrees, while a request that crosses the opponent's move is
+     * ignored by both sides
+     */
+    public void undo() {
+        if (watching || model.getMoveCount() == 0)
+            return;
+        if (!isConnected) {
+            takeBack(model.getLastColor());
+            model.setMyTurn(true);
+        } else if (!model.isMyTurn() && model.getLastColor() == playerColor) {
+            outbound.add(new Connect4MoveMessage(-1, -1, playerColor));
+        }
+    }
+
+    /**
+     * Take back the last move of the given color from our board and from the board of our spectators
+     *
+     * @param color the color of the last move
+     */
+    private void takeBack(int color) {
+        gameNumber++;
+        model.undoMove();
+        Connect4Spectators watchers = spectators;
+        if (watchers != null)
+            watchers.broadcastUndo(color);
+    }
+
+    /**
+     * Handle an UNDO of the other side on the dispatch thread. An UNDO of our color is the opponent agreeing to our
+     * request, an UNDO of the opponent's color asks us to agree while it is our turn. An UNDO that does not match the
+     * last move crossed a move and is ignored
+     *
+     * @param connected the protocol of the connection the UNDO came from
+     * @param color     the color of the move to take back
+     */
+    private void undoReceived(Connect4Protocol connected, int color) {
+        if (model.getMoveCount() == 0 || model.getLastColor() != color)
+            return;
+        if (watching) {
+            takeBack(color);
+        } else if (color == playerColor) {
+            takeBack(color);
+            model.setMyTurn(true);
+        } else if (model.isMyTurn()) {
+            takeBack(color);
+            model.setMyTurn(false);
+            if (connected == protocol)
+                outbound.add(new Connect4MoveMessage(-1, -1, color));
+        }
+    }
+
+    /**
+     * Drop a circle for the AI into the column picked by the search engine, or by Monte Carlo Tree Search when that
+     * engine is selected. A running ponder is stopped first and the search runs on the search thread while this
+     * thread waits, so the shared search is never used by two threads at once. Nothing is played on a full board
      */
     public void computerTurn() {
-        int column = model.updateCircleAI((isServer) ? Connect4MoveMessage.YELLOW : Connect4MoveMessage.RED);
-        Connect4MoveMessage msg = new Connect4MoveMessage(-1, column, (isServer) ? Connect4MoveMessage.YELLOW :
-                Connect4MoveMessage.RED);
+        int color = playerColor;
+        Connect4Model board = model.copyBoard();
+        Connect4Engine engine = getEngine();
+        if (ponderRunning) {
+            ponderRunning = false;
+            getSearch().stop();
+        }
+        int column;
+        try {
+            column = getSearchExecutor().submit(() -> engine.bestMove(board, color)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            System.err.println("Something went wrong with the computer move: " + e.getCause());
+            return;
+        }
+        // the board is full, there is no move to play
+        if (column < 0)
+            return;
+        model.updateCircle(column, color);
+        Connect4MoveMessage msg = new Connect4MoveMessage(-1, column, color);
         sendMessage(msg);
     }
 
     /**
-     * Send the message with our move encoded into it to the other end of the network connection
+     * Start a computer move in the background. The search runs on a copy of the board for the move time and the move
+     * is played and sent through the dispatch executor, the JavaFX thread for the view, so the GUI keeps running while
+     * the computer thinks. The caller should set the turn to false first so no other move is started in the meantime
+     */
+    public void startComputerTurn() {
+        int color = playerColor;
+        Connect4Model board = model.copyBoard();
+        int game = gameNumber;
+        long time = moveTime;
+        Connect4Engine engine = getEngine();
+        getSearchExecutor().execute(() -> {
+            try {
+                int column = engine.bestMove(board, color, time);
+                dispatcher.execute(() -> {
+                    if (game != gameNumber || column == -1)
+                        return;
+                    model.updateCircle(column, color);
+                    sendMessage(new Connect4MoveMessage(-1, column, color));
+                });
+            } catch (RuntimeException e) {
+                System.err.println("Something went wrong with the computer move: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * This method sets whether this side of the game is played by the computer. Only the computer player ponders
+     *
+     * @param computer - boolean true if the computer plays, false for a human
+     */
+    public void setComputerPlayer(boolean computer) {
+        isComputer = computer;
+    }
+
+    /**
+     * This method sets whether the computer player uses Monte Carlo Tree Search instead of the alpha-beta search
+     *
+     * @param mcts - boolean true for Monte Carlo Tree Search, false for the alpha-beta search
+     */
+    public void setMCTS(boolean mcts) {
+        useMCTS = mcts;
+    }
+
+    /**
+     * This method sets whether the alpha-beta computer player keeps searching while it waits for the opponent's move
+     *
+     * @param pondering - boolean true to ponder on the opponent's time
+     */
+    public void setPondering(boolean pondering) {
+        this.pondering = pondering;
+    }
+
+    /**
+     * This method sets how long the computer player thinks about every move started by startComputerTurn
+     *
+     * @param moveTime - long milliseconds per move, at least 1
+     * @throws IllegalArgumentException if the move time is less than 1
+     */
+    public void setMoveTime(long moveTime) throws IllegalArgumentException {
+        if (moveTime < 1)
+            throw new IllegalArgumentException("Move time must be at least 1 millisecond");
+        this.moveTime = moveTime;
+    }
+
+    /**
+     * This method sets how many moves ahead the computer player searches
+     *
+     * @param depth - int number of moves to search, at least 1
+     * @throws IllegalArgumentException if the depth is less than 1
+     */
+    public void setSearchDepth(int depth) throws IllegalArgumentException {
+        if (search != null)
+            search.setDepth(depth);
+        else if (depth < 1)
+            throw new IllegalArgumentException("Search depth must be at least 1");
+        searchDepth = depth;
+    }
+
+    /**
+     * This method sets how many threads the computer player searches or runs playouts with. One thread always picks
+     * the same move for the same position
+     *
+     * @param threads - int number of threads, at least 1
+     * @throws IllegalArgumentException if the number of threads is less than 1
+     */
+    public void setSearchThreads(int threads) throws IllegalArgumentException {
+        if (threads < 1)
+            throw new IllegalArgumentException("Search threads must be at least 1");
+        if (search != null)
+            search.setThreads(threads);
+        if (mcts != null)
+            mcts.setThreads(threads);
+        searchThreads = threads;
+    }
+
+    /**
+     * This method sets the size of the board and how many circles in a line win, both players have to use the same
+     * board. The game is reset
+     *
+     * @param rows    - int number of rows, 1 to Connect4Geometry.MAX_SIZE
+     * @param columns - int number of columns, 1 to Connect4Geometry.MAX_SIZE
+     * @param connect - int number of circles in a winning line
+     * @throws IllegalArgumentException if there is no such board
+     */
+    public void setBoard(int rows, int columns, int connect) throws IllegalArgumentException {
+        model.setGeometry(new Connect4Geometry(rows, columns, connect));
+    }
+
+    /**
+     * Returns the number of rows of the board
+     *
+     * @return - int height of the board
+     */
+    public int getRows() {
+        return model.getRows();
+    }
+
+    /**
+     * Returns the number of columns of the board
+     *
+     * @return - int width of the board
+     */
+    public int getColumns() {
+        return model.getColumns();
+    }
+
+    /**
+     * Returns the engine selected for the computer player. Monte Carlo Tree Search only plays boards that fit in one
+     * long, larger boards are always searched
+     *
+     * @return - Connect4Engine used by computerTurn and startComputerTurn
+     */
+    private Connect4Engine getEngine() {
+        return useMCTS && model.getGeometry().fitsLong() ? getMCTS() : getSearch();
+    }
+
+    /**
+     * Returns the Monte Carlo Tree Search engine of the computer player and creates it on first use
+     *
+     * @return - Connect4MCTS used when that engine is selected
+     */
+    private synchronized Connect4MCTS getMCTS() {
+        if (mcts == null) {
+            mcts = new Connect4MCTS();
+            mcts.setThreads(searchThreads);
+        }
+        return mcts;
+    }
+
+    /**
+     * Returns the search engine of the computer player and creates it on first use. The opening book in the working
+     * directory is used when there is one
+     *
+     * @return - Connect4Search used by computerTurn
+     */
+    private synchronized Connect4Search getSearch() {
+        if (search == null) {
+            search = new Connect4Search(searchDepth);
+            search.setThreads(searchThreads);
+            search.setOpeningBook(Connect4OpeningBook.openIfPresent(Paths.get(Connect4OpeningBook.DEFAULT_FILE)));
+        }
+        return search;
+    }
+
+    /**
+     * Returns the single daemon thread that runs background searches and creates it on first use
+     *
+     * @return - ExecutorService used by startComputerTurn
+     */
+    private synchronized ExecutorService getSearchExecutor() {
+        if (searchExecutor == null)
+            searchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "Connect4 search");
+                thread.setDaemon(true);
+                return thread;
+            });
+        return searchExecutor;
+    }
+
+    /**
+     * Queue our move for the writer thread, which sends it to the other end of the network connection. A computer
+     * player starts pondering on the opponent's move at the same time
      *
      * @param msg contains the move data
      */
     private void sendMessage(Connect4MoveMessage msg) {
+        broadcastMove(msg.getColumn(), msg.getColor());
         if (!isConnected)
             return;
-        Thread t = new Thread(() -> {
-            try {
-                oos.writeObject(msg);
-                oos.flush();
-                Connect4MoveMessage otherMsg = (Connect4MoveMessage) ois.readObject();
-                Platform.runLater(() -> {
-                    model.setMyTurn(true);
-                    model.updateCircle(otherMsg.getColumn(), otherMsg.getColor());
-                });
-            } catch (IOException | ClassNotFoundException e) {
-                System.err.println("Something went wrong with serialization: " + e.getMessage());
+        if (isComputer && pondering && !useMCTS && !model.isGameOver()) {
+            // set before the move is queued, so the reply can't arrive before the reader knows to stop the ponder
+            ponderRunning = true;
+            int opponent = msg.getColor() == Connect4MoveMessage.YELLOW ? Connect4MoveMessage.RED :
+                    Connect4MoveMessage.YELLOW;
+            startPondering(model.copyBoard(), opponent);
+        }
+        outbound.add(msg);
+    }
+
+    /**
+     * Pass a move that was played on our board on to the spectators, if there are any. This only appends the move to
+     * their shared log and never waits for a spectator
+     *
+     * @param column the column of the move
+     * @param color  the color of the move
+     */
+    private void broadcastMove(int column, int color) {
+        Connect4Spectators watchers = spectators;
+        if (watchers != null)
+            watchers.broadcastMove(column, color);
+    }
+
+    /**
+     * Start the reader and writer threads of a new connection. They run until the connection is closed
+     */
+    private void startConnectionThreads() {
+        outbound.clear();
+        Connect4Protocol connected = protocol;
+        Thread reader = new Thread(() -> readMessages(connected), "Connect4 reader");
+        reader.setDaemon(true);
+        reader.start();
+        writer = new Thread(() -> writeMessages(connected), "Connect4 writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Read every message of the other side and hand it to the dispatch executor until the connection is closed. Moves
+     * are played on our model and passed on to our spectators. A START message from a Connect4Server sets our color
+     * and board and gives us the turn when we play yellow. A JOIN on another board than ours ends the connection,
+     * since its moves would not fit our board, and so does a move of our color or into a column we can't play. When we
+     * watch, moves never give us the turn and a RESET starts a new game. An UNDO takes back the last move as described
+     * in undo. Pings and the other messages carry nothing the board needs and are skipped. Runs on the reader thread
+     *
+     * @param connected the protocol of the connection to read
+     */
+    private void readMessages(Connect4Protocol connected) {
+        try {
+            while (true) {
+                int type = connected.read();
+                if (type == Connect4Protocol.MOVE) {
+                    if (ponderRunning) {
+                        ponderRunning = false;
+                        getSearch().stop();
+                    }
+                    int column = connected.getColumn();
+                    int color = connected.getColor();
+                    boolean turn = !watching;
+                    dispatcher.execute(() -> {
+                        // a move of our color or off our board would corrupt the model, the other side is broken
+                        if ((turn && color == playerColor) || column >= model.getColumns() || !model.canPlay(column)) {
+                            if (connected == protocol) {
+                                System.err.println("Something went wrong with the network! The other player sent " +
+                                        "an illegal move to column " + column);
+                                disconnect();
+                            }
+                            return;
+                        }
+                        model.setMyTurn(turn);
+                        model.updateCircle(column, color);
+                        broadcastMove(column, color);
+                    });
+                } else if (type == Connect4Protocol.START) {
+                    playerColor = connected.getColor();
+                    boolean first = playerColor == Connect4MoveMessage.YELLOW;
+                    Connect4Geometry board = connected.getGeometry();
+                    dispatcher.execute(() -> {
+                        if (!board.equals(model.getGeometry()))
+                            model.setGeometry(board);
+                        if (first)
+                            model.setMyTurn(true);
+                    });
+                } else if (type == Connect4Protocol.JOIN && !connected.getGeometry().equals(model.getGeometry())) {
+                    Connect4Geometry board = connected.getGeometry();
+                    dispatcher.execute(() -> {
+                        if (connected != protocol)
+                            return;
+                        System.err.println("Something went wrong with the network! The other player plays on a " +
+                                board + " board");
+                        disconnect();
+                    });
+                    return;
+                } else if (type == Connect4Protocol.UNDO) {
+                    int color = connected.getColor();
+                    dispatcher.execute(() -> undoReceived(connected, color));
+                } else if (type == Connect4Protocol.RESET && watching) {
+                    dispatcher.execute(this::newGameReset);
+                }
             }
-        });
-        t.start();
+        } catch (EOFException e) {
+            if (connected == protocol)
+                System.err.println("Something went wrong with the network! The other player closed the connection");
+        } catch (IOException e) {
+            if (connected == protocol)
+                System.err.println("Something went wrong with the network! " + e.getMessage());
+        }
+    }
+
+    /**
+     * Send the queued moves in order until the connection is closed. A message without a column is an UNDO of its
+     * color. Runs on the writer thread
+     *
+     * @param connected the protocol of the connection to write
+     */
+    private void writeMessages(Connect4Protocol connected) {
+        try {
+            while (true) {
+                Connect4MoveMessage msg = outbound.take();
+                if (msg.getColumn() < 0)
+                    connected.writeUndo(msg.getColor());
+                else
+                    connected.writeMove(msg.getColumn(), msg.getColor());
+            }
+        } catch (InterruptedException e) {
+            // the connection was closed
+        } catch (IOException e) {
+            if (connected == protocol)
+                System.err.println("Something went wrong with the network! " + e.getMessage());
+        }
+    }
+
+    /**
+     * Close the network connection if there is one and stop its reader and writer threads. Moves that have not been
+     * sent yet are dropped
+     */
+    public void disconnect() {
+        if (!isConnected)
+            return;
+        isConnected = false;
+        protocol = null;
+        writer.interrupt();
+        try {
+            connection.close();
+        } catch (IOException e) {
+            System.err.println("Something went wrong closing the connection: " + e.getMessage());
+        }
+        if (ponderRunning) {
+            ponderRunning = false;
+            getSearch().stop();
+        }
+    }
+
+    /**
+     * Start searching the position for the opponent on the search thread. This keeps the transposition table filled
+     * with the likely replies and our answers until the opponent's move arrives and the ponder is stopped
+     *
+     * @param board copy of the board after our move
+     * @param color the color of the opponent
+     */
+    private void startPondering(Connect4Model board, int color) {
+        Connect4Search engine = getSearch();
+        int ticket = engine.getStopCount();
+        getSearchExecutor().execute(() -> engine.ponder(board, color, ticket));
     }
 
     /**
@@ -182,7 +706,11 @@ public class Connect4Controller {
      *
      */
     public void newGameReset() {
+    	gameNumber++;
     	model.newGameReset();
+    	Connect4Spectators watchers = spectators;
+    	if (watchers != null)
+    	    watchers.broadcastReset();
     }
 
 }
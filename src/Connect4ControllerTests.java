@@ -1,6 +1,18 @@
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -69,7 +81,6 @@ public class Connect4ControllerTests {
         for (int i = 0; i < 42; i++) {
             serverController.computerTurn();
         }
-        serverModel.flipServerTurn();
         // check game over
         assertTrue(serverController.isGameOver());
         // check exception due to board full
@@ -100,13 +111,807 @@ public class Connect4ControllerTests {
         serverController.humanTurn(0);
         serverController.humanTurn(0);
         serverController.humanTurn(0);
-        serverModel.flipServerTurn();
         assertTrue(serverController.isGameOver());
         serverController.newGameReset();
         assertFalse(serverController.isGameOver());
     }
 
+    /**
+     * This test connects the server controller to an opponent in the same process over a loopback transport instead
+     * of a socket. The opponent reads every move with the protocol, and the game over and full column checks work the
+     * same as over the network. After disconnecting the opponent reads the end of the stream
+     */
+    @Test
+    void testLoopback() throws IOException {
+        Connect4LoopbackTransport[] ends = Connect4LoopbackTransport.pair();
+        Connect4Protocol opponent = new Connect4Protocol(ends[1].getInputStream(), ends[1].getOutputStream());
+        Connect4Model serverModel = new Connect4Model();
+        Connect4Controller serverController = new Connect4Controller(serverModel);
+        serverController.connect(ends[0], true);
+        assertTrue(serverController.getCanClick());
+        for (int i = 0; i < 6; i++) {
+            serverController.humanTurn(3);
+            assertEquals(Connect4Protocol.MOVE, opponent.read());
+            assertEquals(3, opponent.getColumn());
+            assertEquals(Connect4MoveMessage.YELLOW, opponent.getColor());
+        }
+        assertTrue(serverController.isGameOver());
+        assertThrows(IllegalArgumentException.class, () -> serverController.humanTurn(3));
+        serverController.disconnect();
+        assertEquals(-1, ends[1].getInputStream().read());
+    }
+
+    /**
+     * This test lets two controllers play a whole game against each other over a loopback transport without a view.
+     * Both handle the messages of their connection on the reader thread, and every move shows up on the other board
+     * until yellow wins on both
+     */
+    @Test
+    void testLoopbackControllers() throws IOException, InterruptedException {
+        Connect4LoopbackTransport[] ends = Connect4LoopbackTransport.pair();
+        Connect4Model serverModel = new Connect4Model();
+        Connect4Model clientModel = new Connect4Model();
+        Connect4Controller serverController = new Connect4Controller(serverModel, Runnable::run);
+        Connect4Controller clientController = new Connect4Controller(clientModel, Runnable::run);
+        BlockingQueue<Integer> serverMoves = new LinkedBlockingQueue<>();
+        BlockingQueue<Integer> clientMoves = new LinkedBlockingQueue<>();
+        serverModel.addListener(new Connect4Listener() {
+            @Override
+            public void onMove(int row, int column, int color) {
+                serverMoves.add(column);
+            }
+        });
+        clientModel.addListener(new Connect4Listener() {
+            @Override
+            public void onMove(int row, int column, int color) {
+                clientMoves.add(column);
+            }
+        });
+        serverController.connect(ends[0], true);
+        clientController.connect(ends[1], false);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(serverController.getCanClick());
+            serverController.humanTurn(0);
+            assertEquals(0, serverMoves.take());
+            assertEquals(0, clientMoves.poll(5, TimeUnit.SECONDS));
+            if (i == 3)
+                break;
+            assertTrue(clientController.getCanClick());
+            clientController.humanTurn(1);
+            assertEquals(1, clientMoves.take());
+            assertEquals(1, serverMoves.poll(5, TimeUnit.SECONDS));
+        }
+        assertEquals(Connect4MoveMessage.YELLOW, serverController.getGameResult());
+        assertEquals(Connect4MoveMessage.YELLOW, clientController.getGameResult());
+        assertEquals(serverModel.getHash(), clientModel.getHash());
+        clientController.disconnect();
+        serverController.disconnect();
+    }
+
+    /**
+     * This test adds spectators to a game played over a loopback transport. A spectator added at the start reads
+     * every move, one added during the game first reads the moves it missed, and both read the reset of a new game
+     */
+    @Test
+    void testSpectators() throws IOException {
+        Connect4LoopbackTransport[] ends = Connect4LoopbackTransport.pair();
+        new Connect4Protocol(ends[1].getInputStream(), ends[1].getOutputStream());
+        Connect4Controller serverController = new Connect4Controller(new Connect4Model());
+        serverController.connect(ends[0], true);
+        Connect4LoopbackTransport[] first = Connect4LoopbackTransport.pair();
+        serverController.addSpectator(first[0]);
+        Connect4Protocol early = new Connect4Protocol(first[1].getInputStream(), first[1].getOutputStream());
+        assertEquals(Connect4Protocol.RESET, early.read());
+        for (int i = 0; i < 3; i++) {
+            serverController.humanTurn(i);
+            assertEquals(Connect4Protocol.MOVE, early.read());
+            assertEquals(i, early.getColumn());
+        }
+        Connect4LoopbackTransport[] second = Connect4LoopbackTransport.pair();
+        serverController.addSpectator(second[0]);
+        Connect4Protocol late = new Connect4Protocol(second[1].getInputStream(), second[1].getOutputStream());
+        assertEquals(Connect4Protocol.RESET, late.read());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Connect4Protocol.MOVE, late.read());
+            assertEquals(i, late.getColumn());
+            assertEquals(Connect4MoveMessage.YELLOW, late.getColor());
+        }
+        assertEquals(2, serverController.getSpectatorCount());
+        serverController.newGameReset();
+        assertEquals(Connect4Protocol.RESET, early.read());
+        assertEquals(Connect4Protocol.RESET, late.read());
+        serverController.disconnect();
+    }
+
+    /**
+     * This test takes back moves. Without a connection the move is taken back right away, which ends a won game and
+     * leaves the board as it was before the move. Over a loopback transport our last move is not taken back but an
+     * UNDO asks the opponent first
+     */
+    @Test
+    void testUndo() throws IOException {
+        Connect4Model model = new Connect4Model();
+        Connect4Controller controller = new Connect4Controller(model);
+        for (int i = 0; i < 3; i++)
+            controller.humanTurn(0);
+        long hash = model.getHash();
+        controller.humanTurn(0);
+        assertTrue(controller.isGameOver());
+        controller.undo();
+        assertFalse(controller.isGameOver());
+        assertEquals(3, model.getMoveCount());
+        assertEquals(hash, model.getHash());
+        assertTrue(controller.getCanClick());
+
+        Connect4LoopbackTransport[] ends = Connect4LoopbackTransport.pair();
+        Connect4Protocol opponent = new Connect4Protocol(ends[1].getInputStream(), ends[1].getOutputStream());
+        Connect4Model serverModel = new Connect4Model();
+        Connect4Controller serverController = new Connect4Controller(serverModel);
+        serverController.connect(ends[0], true);
+        serverController.humanTurn(3);
+        serverController.setTurn(false);
+        serverController.undo();
+        assertEquals(Connect4Protocol.MOVE, opponent.read());
+        assertEquals(Connect4Protocol.UNDO, opponent.read());
+        assertEquals(Connect4MoveMessage.YELLOW, opponent.getColor());
+        assertEquals(1, serverModel.getMoveCount());
+        serverController.disconnect();
+    }
+
+    /**
+     * This test plays connect 5 on a 10 by 10 board, which is too large for one long. A line of 4 does not win there,
+     * the fifth circle does, and the computer player finds the winning column
+     */
+    @Test
+    void testLargeBoard() {
+        Connect4Model model = new Connect4Model();
+        Connect4Controller controller = new Connect4Controller(model);
+        controller.setBoard(10, 10, 5);
+        assertEquals(10, controller.getRows());
+        assertEquals(10, controller.getColumns());
+        for (int column = 2; column < 6; column++) {
+            model.updateCircle(column, Connect4MoveMessage.YELLOW);
+            model.updateCircle(column, Connect4MoveMessage.RED);
+        }
+        assertFalse(controller.isGameOver());
+        int column = new Connect4Search(4).bestMove(model, Connect4MoveMessage.YELLOW);
+        assertTrue(column == 1 || column == 6);
+        model.updateCircle(column, Connect4MoveMessage.YELLOW);
+        assertEquals(Connect4MoveMessage.YELLOW, controller.getGameResult());
+        assertThrows(IllegalArgumentException.class, () -> controller.setBoard(4, 20, 4));
+    }
+
+    /**
+     * This test follows a game with listeners. A listener gets every move with its row counted from the top, the end
+     * of the game after the winning move and the reset. A listener on an executor gets the same calls once the
+     * executor runs them, and a removed listener gets nothing
+     */
+    @Test
+    void testListeners() {
+        Connect4Model model = new Connect4Model();
+        StringBuilder calls = new StringBuilder();
+        Connect4Listener listener = new Connect4Listener() {
+            @Override
+            public void onMove(int row, int column, int color) {
+                calls.append("move ").append(row).append(' ').append(column).append(' ').append(color).append(';');
+            }
+
+            @Override
+            public void onReset() {
+                calls.append("reset;");
+            }
+
+            @Override
+            public void onGameOver(int result) {
+                calls.append("over ").append(result).append(';');
+            }
+        };
+        List<Runnable> queued = new ArrayList<>();
+        StringBuilder later = new StringBuilder();
+        model.addListener(listener);
+        model.addListener(new Connect4Listener() {
+            @Override
+            public void onGameOver(int result) {
+                later.append("over ").append(result);
+            }
+        }, queued::add);
+        for (int i = 0; i < 3; i++)
+            model.updateCircle(0, Connect4MoveMessage.YELLOW);
+        assertEquals("move 5 0 1;move 4 0 1;move 3 0 1;", calls.toString());
+        model.updateCircle(0, Connect4MoveMessage.YELLOW);
+        assertTrue(calls.toString().endsWith("move 2 0 1;over 1;"));
+        model.updateCircle(1, Connect4MoveMessage.RED);
+        assertTrue(calls.toString().endsWith("over 1;move 5 1 2;"));
+        model.undoMove();
+        model.undoMove();
+        assertTrue(calls.toString().endsWith("over 1;move 5 1 2;move 5 1 0;move 2 0 0;"));
+        model.newGameReset();
+        assertTrue(calls.toString().endsWith("reset;"));
+        assertEquals(9, queued.size());
+        assertEquals("", later.toString());
+        queued.forEach(Runnable::run);
+        assertEquals("over 1", later.toString());
+
+        model.removeListener(listener);
+        calls.setLength(0);
+        model.updateCircle(3, Connect4MoveMessage.RED);
+        model.play(3);
+        assertEquals("", calls.toString());
+    }
+
+    /**
+     * This test finds the lines that win the game. Three circles in a row with a gap do not win until the gap is
+     * filled, and both diagonals win once their lowest circle is dropped
+     */
+    @Test
+    void testWinLines() {
+        Connect4Model horizontal = new Connect4Model();
+        drop(horizontal, Connect4MoveMessage.YELLOW, 0, 1, 2, 4);
+        drop(horizontal, Connect4MoveMessage.RED, 0, 1, 2);
+        assertFalse(horizontal.isGameOver());
+        horizontal.updateCircle(3, Connect4MoveMessage.YELLOW);
+        assertEquals(Connect4MoveMessage.YELLOW, horizontal.getGameResult());
+
+        for (boolean mirrored : new boolean[] {false, true}) {
+            Connect4Model diagonal = new Connect4Model();
+            int[] columns = mirrored ? new int[] {6, 5, 4, 3} : new int[] {0, 1, 2, 3};
+            drop(diagonal, Connect4MoveMessage.RED, columns[1], columns[2], columns[2], columns[3]);
+            drop(diagonal, Connect4MoveMessage.YELLOW, columns[1], columns[2], columns[3]);
+            drop(diagonal, Connect4MoveMessage.RED, columns[3]);
+            assertFalse(diagonal.isGameOver());
+            diagonal.updateCircle(columns[3], Connect4MoveMessage.YELLOW);
+            assertFalse(diagonal.isGameOver());
+            diagonal.updateCircle(columns[0], Connect4MoveMessage.YELLOW);
+            assertEquals(Connect4MoveMessage.YELLOW, diagonal.getGameResult());
+        }
+    }
+
+    /**
+     * This test checks that a line over the top of one column and the bottom of the next does not win, on the
+     * standard board and on a board too large for one long
+     */
+    @Test
+    void testEdgeWrap() {
+        Connect4Model standard = new Connect4Model();
+        drop(standard, Connect4MoveMessage.RED, 0, 0);
+        drop(standard, Connect4MoveMessage.YELLOW, 0);
+        drop(standard, Connect4MoveMessage.RED, 0);
+        drop(standard, Connect4MoveMessage.YELLOW, 0, 0, 1, 1);
+        assertFalse(standard.isGameOver());
+
+        Connect4Model large = new Connect4Model(new Connect4Geometry(10, 10, 5));
+        drop(large, Connect4MoveMessage.RED, 0, 0, 0, 0);
+        drop(large, Connect4MoveMessage.YELLOW, 0);
+        drop(large, Connect4MoveMessage.RED, 0, 0);
+        drop(large, Connect4MoveMessage.YELLOW, 0, 0, 0, 1, 1);
+        assertFalse(large.isGameOver());
+    }
+
+    /**
+     * This test fills the board without a line of four, which ends the game in a draw with the last circle
+     */
+    @Test
+    void testDraw() {
+        Connect4Model model = new Connect4Model();
+        for (int row = 0; row < 6; row++) {
+            for (int column = 0; column < 7; column++) {
+                assertFalse(model.isGameOver());
+                boolean yellow = (row / 2 + (column == 3 ? 1 : 0)) % 2 == 0;
+                model.updateCircle(column, yellow ? Connect4MoveMessage.YELLOW : Connect4MoveMessage.RED);
+            }
+        }
+        assertEquals(Connect4Model.DRAW, model.getGameResult());
+    }
+
+    /**
+     * This test writes every message type to a byte stream and reads them back. A move is 2 bytes after the 3 byte
+     * header, and START and JOIN carry their board
+     */
+    @Test
+    void testProtocolRoundTrip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Connect4Protocol writer = new Connect4Protocol(new ByteArrayInputStream(new byte[0]), bytes);
+        writer.writeMove(6, Connect4MoveMessage.RED);
+        assertEquals(5, bytes.size());
+        Connect4Geometry board = new Connect4Geometry(7, 8, 5);
+        writer.writeStart(Connect4MoveMessage.YELLOW, board);
+        writer.writeJoin(Connect4Lobby.HUMAN, Connect4Geometry.STANDARD);
+        writer.writeUndo(Connect4MoveMessage.RED);
+        writer.writeResign(Connect4MoveMessage.YELLOW);
+        writer.writeReset();
+        writer.writePing();
+
+        Connect4Protocol reader = new Connect4Protocol(new ByteArrayInputStream(bytes.toByteArray()),
+                new ByteArrayOutputStream());
+        assertEquals(Connect4Protocol.MOVE, reader.read());
+        assertEquals(6, reader.getColumn());
+        assertEquals(Connect4MoveMessage.RED, reader.getColor());
+        assertEquals(Connect4Protocol.START, reader.read());
+        assertEquals(Connect4MoveMessage.YELLOW, reader.getColor());
+        assertEquals(board, reader.getGeometry());
+        assertEquals(Connect4Protocol.JOIN, reader.read());
+        assertEquals(Connect4Lobby.HUMAN, reader.getColor());
+        assertEquals(Connect4Geometry.STANDARD, reader.getGeometry());
+        assertEquals(Connect4Protocol.UNDO, reader.read());
+        assertEquals(Connect4MoveMessage.RED, reader.getColor());
+        assertEquals(Connect4Protocol.RESIGN, reader.read());
+        assertEquals(Connect4MoveMessage.YELLOW, reader.getColor());
+        assertEquals(Connect4Protocol.RESET, reader.read());
+        assertEquals(-1, reader.getColumn());
+        assertEquals(Connect4Protocol.PING, reader.read());
+        assertThrows(EOFException.class, reader::read);
+    }
+
+    /**
+     * This test reads bytes that are not the protocol. Another magic, another version, an unknown message type, a
+     * color that is not a player and a board that does not exist are refused, and a connection that ends in the
+     * middle of a header or message is the end of the stream. A board refuses a move off the board or of another
+     * color before anything is changed, so the column still takes exactly six circles
+     */
+    @Test
+    void testProtocolRejects() {
+        int version = Connect4Protocol.VERSION;
+        assertThrows(IOException.class, () -> read('X', '4', version, Connect4Protocol.PING));
+        assertThrows(IOException.class, () -> read('C', '4', version + 1, Connect4Protocol.PING));
+        assertThrows(IOException.class, () -> read('C', '4', version, 99));
+        assertThrows(IOException.class, () -> read('C', '4', version, Connect4Protocol.JOIN, 0, 6, 7, 9));
+        assertThrows(EOFException.class, () -> read('C', '4'));
+        assertThrows(EOFException.class, () -> read('C', '4', version, Connect4Protocol.MOVE));
+        assertThrows(EOFException.class, () -> read('C', '4', version, Connect4Protocol.START, 1, 6, 7));
+        assertThrows(IOException.class, () -> read('C', '4', version, Connect4Protocol.MOVE, 2 << 2 | 3));
+        assertThrows(IOException.class, () -> read('C', '4', version, Connect4Protocol.MOVE, 2 << 2));
+        assertThrows(IOException.class, () -> read('C', '4', version, Connect4Protocol.UNDO, 0));
+
+        Connect4Model model = new Connect4Model();
+        assertThrows(IllegalArgumentException.class, () -> model.updateCircle(9, Connect4MoveMessage.YELLOW));
+        assertThrows(IllegalArgumentException.class, () -> model.updateCircle(2, 3));
+        assertThrows(IllegalArgumentException.class, () -> model.updateCircle(2, 0));
+        assertEquals(0, model.getMoveCount());
+        assertEquals(new Connect4Model().getHash(), model.getHash());
+        drop(model, Connect4MoveMessage.YELLOW, 2, 2, 2);
+        drop(model, Connect4MoveMessage.RED, 2, 2, 2);
+        assertThrows(IllegalArgumentException.class, () -> model.updateCircle(2, Connect4MoveMessage.RED));
+    }
+
+    /**
+     * This test sends moves a controller must not play. A move into a column the board does not have and a move of
+     * the controller's own color both end the connection and leave the board empty
+     */
+    @Test
+    void testIllegalMoves() throws IOException {
+        for (int[] move : new int[][] {{9, Connect4MoveMessage.RED}, {3, Connect4MoveMessage.YELLOW}}) {
+            Connect4LoopbackTransport[] ends = Connect4LoopbackTransport.pair();
+            Connect4Protocol opponent = new Connect4Protocol(ends[1].getInputStream(), ends[1].getOutputStream());
+            Connect4Model model = new Connect4Model();
+            Connect4Controller controller = new Connect4Controller(model, Runnable::run);
+            controller.connect(ends[0], true);
+            opponent.writeMove(move[0], move[1]);
+            assertThrows(EOFException.class, () -> {
+                while (true)
+                    opponent.read();
+            });
+            assertEquals(0, model.getMoveCount());
+        }
+    }
+
+    /**
+     * Read one message from the given bytes
+     *
+     * @param bytes the bytes the other side sent, each in the range of a byte
+     * @throws IOException if the bytes are not a message of the protocol
+     */
+    private static void read(int... bytes) throws IOException {
+        byte[] data = new byte[bytes.length];
+        for (int i = 0; i < bytes.length; i++)
+            data[i] = (byte) bytes[i];
+        new Connect4Protocol(new ByteArrayInputStream(data), new ByteArrayOutputStream()).read();
+    }
+
+    /**
+     * This test searches small positions. The search plays the column that wins right away and blocks the column the
+     * opponent would win with, and finds no move on a full board where the computer player then plays nothing.
+     * Through a game, a search that keeps its filled transposition table scores every position the same as a new
+     * search whose table holds next to nothing
+     */
+    @Test
+    void testSearch() {
+        Connect4Model win = new Connect4Model();
+        drop(win, Connect4MoveMessage.YELLOW, 0, 0, 0);
+        drop(win, Connect4MoveMessage.RED, 1, 1, 2);
+        Connect4Search search = new Connect4Search(6);
+        assertEquals(0, search.bestMove(win, Connect4MoveMessage.YELLOW));
+        assertEquals(Connect4Search.WIN_SCORE - 1, search.getCompletedScore());
+
+        Connect4Model block = new Connect4Model();
+        drop(block, Connect4MoveMessage.YELLOW, 0, 0, 0);
+        drop(block, Connect4MoveMessage.RED, 1, 2);
+        assertEquals(0, search.bestMove(block, Connect4MoveMessage.RED));
+
+        Connect4Model game = new Connect4Model();
+        Connect4Search reused = new Connect4Search(7);
+        int color = Connect4MoveMessage.YELLOW;
+        for (int column : new int[] {3, 3, 2, 4, 4, 2, 5, 1, 1, 5, 0, 6, 6, 0}) {
+            reused.bestMove(game, color);
+            Connect4Search fresh = new Connect4Search(7, new Connect4TranspositionTable(1));
+            fresh.bestMove(game, color);
+            assertEquals(fresh.getCompletedScore(), reused.getCompletedScore());
+            game.updateCircle(column, color);
+            color = 3 - color;
+        }
+        assertFalse(game.isGameOver());
+
+        Connect4Model full = new Connect4Model();
+        for (int column : Connect4LoadTest.DRAW_MOVES)
+            full.play(column);
+        assertEquals(-1, search.bestMove(full, Connect4MoveMessage.YELLOW));
+        Connect4Controller controller = new Connect4Controller(full, Runnable::run);
+        controller.computerTurn();
+        assertEquals(full.getRows() * full.getColumns(), full.getMoveCount());
+    }
+
+    /**
+     * This test writes a small opening book and looks up positions in it. A position and its mirror image share one
+     * entry, so their moves are mirror images as well. Positions past the book or on another board are not found
+     */
+    @Test
+    void testOpeningBook(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("test.book");
+        Connect4BookGenerator generator = new Connect4BookGenerator(3, 4);
+        generator.generate();
+        generator.write(file);
+        Connect4OpeningBook book = new Connect4OpeningBook(file);
+        assertEquals(3, book.getPly());
+
+        Connect4Model left = new Connect4Model();
+        Connect4Model right = new Connect4Model();
+        left.updateCircle(1, Connect4MoveMessage.YELLOW);
+        right.updateCircle(5, Connect4MoveMessage.YELLOW);
+        int column = book.lookup(left, Connect4MoveMessage.RED);
+        assertNotEquals(-1, column);
+        assertEquals(6 - column, book.lookup(right, Connect4MoveMessage.RED));
+        left.updateCircle(2, Connect4MoveMessage.RED);
+        right.updateCircle(4, Connect4MoveMessage.RED);
+        column = book.lookup(left, Connect4MoveMessage.YELLOW);
+        assertNotEquals(-1, column);
+        assertEquals(6 - column, book.lookup(right, Connect4MoveMessage.YELLOW));
+
+        Connect4Search search = new Connect4Search(4);
+        search.setOpeningBook(book);
+        assertEquals(column, search.bestMove(left, Connect4MoveMessage.YELLOW));
+        assertEquals(0, search.getNodeCount());
+        left.updateCircle(column, Connect4MoveMessage.YELLOW);
+        assertEquals(-1, book.lookup(left, Connect4MoveMessage.RED));
+        assertEquals(-1, book.lookup(new Connect4Model(7, 8, 4), Connect4MoveMessage.YELLOW));
+    }
+
+    /**
+     * This test lets Monte Carlo Tree Search play small positions with one thread, so the moves are always the same.
+     * It plays a column that wins right away, and with two circles in the middle of the bottom row it makes the open
+     * three that can't be stopped. A board too large for one long is refused
+     */
+    @Test
+    void testMCTS() {
+        Connect4MCTS mcts = new Connect4MCTS(1 << 16);
+        mcts.setPlayouts(20_000);
+        Connect4Model win = new Connect4Model();
+        drop(win, Connect4MoveMessage.YELLOW, 0, 0, 0);
+        drop(win, Connect4MoveMessage.RED, 1, 1, 2);
+        assertEquals(0, mcts.bestMove(win, Connect4MoveMessage.YELLOW));
+
+        Connect4Model forced = new Connect4Model();
+        drop(forced, Connect4MoveMessage.YELLOW, 2, 3);
+        drop(forced, Connect4MoveMessage.RED, 2, 3);
+        int column = mcts.bestMove(forced, Connect4MoveMessage.YELLOW);
+        assertTrue(column == 1 || column == 4);
+        assertEquals(20_000, mcts.getPlayoutCount());
+
+        Connect4Model large = new Connect4Model(new Connect4Geometry(10, 10, 5));
+        assertThrows(IllegalArgumentException.class, () -> mcts.bestMove(large, Connect4MoveMessage.YELLOW));
+    }
+
+    /**
+     * This test plays the moves of the load test, which have to fill the board without a line of four so the server
+     * never ends a game of the load test early
+     */
+    @Test
+    void testLoadTestMoves() {
+        Connect4Model model = new Connect4Model();
+        assertEquals(model.getRows() * model.getColumns(), Connect4LoadTest.DRAW_MOVES.length);
+        for (int column : Connect4LoadTest.DRAW_MOVES) {
+            assertFalse(model.isGameOver());
+            model.play(column);
+        }
+        assertEquals(Connect4Model.DRAW, model.getGameResult());
+    }
+
+    /**
+     * This test pairs players in a lobby. Players only meet players of their own queue, the one that waited longest
+     * is paired first, a player that left is not paired and a player joining twice is never paired with itself. The
+     * board is not part of the queue, a server only lets players on its own board into the lobby
+     */
+    @Test
+    void testLobby() {
+        Connect4Lobby<String> lobby = new Connect4Lobby<>();
+        int depth = Connect4Lobby.queueFor(true, false, 6);
+        assertEquals(Connect4Lobby.HUMAN, Connect4Lobby.queueFor(false, true, 6));
+        assertEquals(Connect4Lobby.MCTS, Connect4Lobby.queueFor(true, true, 6));
+        assertEquals(6, depth);
+        assertNull(lobby.join(Connect4Lobby.HUMAN, "alice"));
+        assertNull(lobby.join(depth, "search"));
+        assertNull(lobby.join(Connect4Lobby.MCTS, "mcts"));
+        assertNull(lobby.join(Connect4Lobby.HUMAN, "alice"));
+        assertEquals(3, lobby.getWaitingCount());
+        assertEquals(1, lobby.getQueueDepth(Connect4Lobby.HUMAN));
+        assertEquals("alice", lobby.join(Connect4Lobby.HUMAN, "bob"));
+        assertNull(lobby.join(Connect4Lobby.HUMAN, "carol"));
+        assertTrue(lobby.leave(Connect4Lobby.HUMAN, "carol"));
+        assertFalse(lobby.leave(Connect4Lobby.HUMAN, "carol"));
+        assertNull(lobby.join(Connect4Lobby.HUMAN, "dave"));
+        assertEquals("search", lobby.join(depth, "other search"));
+        assertEquals(2, lobby.getMatchCount());
+        assertEquals(2, lobby.getWaitingCount());
+        assertThrows(IllegalArgumentException.class, () -> lobby.join(Connect4Lobby.QUEUES, "eve"));
+    }
+
+    /**
+     * This test plays a game on a Connect4Server, see playOnServer
+     */
+    @Test
+    void testSelectorServer() throws IOException, InterruptedException {
+        try (Connect4Server server = new Connect4Server(0, 2)) {
+            playOnServer(server.getPort(), server::getGameCount);
+        }
+    }
+
+    /**
+     * This test plays a game on a Connect4ThreadServer, see playOnServer
+     */
+    @Test
+    void testThreadServer() throws IOException, InterruptedException {
+        try (Connect4ThreadServer server = new Connect4ThreadServer(0)) {
+            playOnServer(server.getPort(), server::getGameCount);
+        }
+    }
+
+    /**
+     * Pair two players on a server and play a game to the end. A player on another board is never paired. Both
+     * players are told their color and the board, the win ends the game and a RESET starts the next one, and a
+     * RESET before that game has a result loses it for the player that sent it
+     *
+     * @param port  the port of the server
+     * @param games the number of games the server is playing
+     * @throws IOException          if a connection fails
+     * @throws InterruptedException if the test is interrupted
+     */
+    private static void playOnServer(int port, IntSupplier games) throws IOException, InterruptedException {
+        try (Socket other = new Socket("localhost", port);
+             Socket first = new Socket("localhost", port);
+             Socket second = new Socket("localhost", port)) {
+            Connect4Protocol large = new Connect4Protocol(other.getInputStream(), other.getOutputStream());
+            large.writeJoin(Connect4Lobby.HUMAN, new Connect4Geometry(7, 8, 4));
+            assertThrows(EOFException.class, large::read);
+            Connect4Protocol one = new Connect4Protocol(first.getInputStream(), first.getOutputStream());
+            one.writeJoin(Connect4Lobby.HUMAN, Connect4Geometry.STANDARD);
+            Connect4Protocol two = new Connect4Protocol(second.getInputStream(), second.getOutputStream());
+            two.writeJoin(Connect4Lobby.HUMAN, Connect4Geometry.STANDARD);
+            assertEquals(Connect4Protocol.START, one.read());
+            assertEquals(Connect4Geometry.STANDARD, one.getGeometry());
+            assertEquals(Connect4Protocol.START, two.read());
+            assertEquals(3, one.getColor() + two.getColor());
+            Connect4Protocol yellow = one.getColor() == Connect4MoveMessage.YELLOW ? one : two;
+            Connect4Protocol red = yellow == one ? two : one;
+            awaitGames(games, 1);
 
+            for (int i = 0; i < 3; i++) {
+                yellow.writeMove(0, Connect4MoveMessage.YELLOW);
+                assertEquals(Connect4Protocol.MOVE, red.read());
+                red.writeMove(1, Connect4MoveMessage.RED);
+                assertEquals(Connect4Protocol.MOVE, yellow.read());
+            }
+            yellow.writeMove(0, Connect4MoveMessage.YELLOW);
+            assertEquals(Connect4Protocol.MOVE, red.read());
+            awaitGames(games, 0);
+            red.writeReset();
+            assertEquals(Connect4Protocol.RESET, yellow.read());
+            awaitGames(games, 1);
+
+            yellow.writeMove(3, Connect4MoveMessage.YELLOW);
+            assertEquals(Connect4Protocol.MOVE, red.read());
+            red.writeReset();
+            assertEquals(Connect4Protocol.RESIGN, yellow.read());
+            assertEquals(Connect4MoveMessage.RED, yellow.getColor());
+            assertThrows(EOFException.class, yellow::read);
+            awaitGames(games, 0);
+        }
+    }
+
+    /**
+     * Wait until a server reports the given number of games, it counts them on its own threads
+     *
+     * @param games the number of games the server is playing
+     * @param count the number to wait for
+     * @throws InterruptedException if the test is interrupted
+     */
+    private static void awaitGames(IntSupplier games, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (games.getAsInt() != count && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        assertEquals(count, games.getAsInt());
+    }
+
+    /**
+     * This test plays a position and its mirror image, on the standard board and on one with an even number of
+     * columns. Both share a canonical hash and exactly one of them is mirrored
+     */
+    @Test
+    void testMirroredHash() {
+        for (Connect4Geometry geometry : new Connect4Geometry[] {Connect4Geometry.STANDARD,
+                new Connect4Geometry(7, 8, 4)}) {
+            Connect4Model model = new Connect4Model();
+            Connect4Model mirror = new Connect4Model();
+            model.setGeometry(geometry);
+            mirror.setGeometry(geometry);
+            int[] columns = {0, 1, 1, 2, 5, 2};
+            int last = geometry.getColumns() - 1;
+            for (int i = 0; i < columns.length; i++) {
+                int color = i % 2 == 0 ? Connect4MoveMessage.YELLOW : Connect4MoveMessage.RED;
+                drop(model, color, columns[i]);
+                drop(mirror, color, last - columns[i]);
+                assertEquals(model.getCanonicalHash(), mirror.getCanonicalHash());
+                assertNotEquals(model.getHash(), mirror.getHash());
+                assertNotEquals(model.isMirrored(), mirror.isMirrored());
+                assertEquals(model.isMirrored() ? mirror.getHash() : model.getHash(), model.getCanonicalHash());
+            }
+        }
+    }
+
+    /**
+     * This test journals two games, the second on a larger board, with moves that are taken back. Replaying the
+     * journal gives the same boards and results, and the moves that were taken back are not counted
+     */
+    @Test
+    void testJournal(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("test.journal");
+        long before = System.currentTimeMillis();
+        Connect4Model model = new Connect4Model();
+        Connect4Journal journal = new Connect4Journal(file);
+        model.setJournal(journal);
+        drop(model, Connect4MoveMessage.YELLOW, 3);
+        drop(model, Connect4MoveMessage.RED, 6);
+        model.undoMove();
+        for (int i = 0; i < 3; i++) {
+            drop(model, Connect4MoveMessage.RED, 4);
+            drop(model, Connect4MoveMessage.YELLOW, 3);
+        }
+        assertEquals(Connect4MoveMessage.YELLOW, model.getGameResult());
+        long firstHash = model.getHash();
+        model.setGeometry(new Connect4Geometry(7, 8, 5));
+        drop(model, Connect4MoveMessage.YELLOW, 7);
+        drop(model, Connect4MoveMessage.RED, 0);
+        drop(model, Connect4MoveMessage.YELLOW, 6);
+        model.undoMove();
+        model.undoMove();
+        drop(model, Connect4MoveMessage.RED, 1);
+        long secondHash = model.getHash();
+        journal.close();
+
+        Connect4Replay replay = new Connect4Replay(file);
+        assertEquals(2, replay.getGameCount());
+        assertEquals(Connect4Geometry.STANDARD, replay.getGeometry(0));
+        assertEquals(new Connect4Geometry(7, 8, 5), replay.getGeometry(1));
+        assertEquals(7, replay.getMoveCount(0));
+        assertEquals(2, replay.getMoveCount(1));
+        assertTrue(replay.getStartMillis(0) >= before);
+        assertTrue(replay.getStartMillis(1) <= System.currentTimeMillis());
+        Connect4Model replayed = new Connect4Model();
+        replay.replay(0, replayed);
+        assertEquals(firstHash, replayed.getHash());
+        assertEquals(Connect4MoveMessage.YELLOW, replayed.getGameResult());
+        replay.replay(1, replayed);
+        assertEquals(8, replayed.getColumns());
+        assertEquals(secondHash, replayed.getHash());
+        assertEquals(Connect4Model.IN_PROGRESS, replayed.getGameResult());
+        int[] moves = new int[2];
+        replay.getMoves(1, moves);
+        assertArrayEquals(new int[] {7 << 2 | Connect4MoveMessage.YELLOW, 1 << 2 | Connect4MoveMessage.RED}, moves);
+    }
+
+    /**
+     * This test archives more games than fit one block, some starting before the game archived before them, and
+     * reads them back from a seek into the second block, a seek into the first block and across the block boundary
+     */
+    @Test
+    void testArchive(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("test.archive");
+        int games = Connect4ArchiveWriter.GAMES_PER_BLOCK + 100;
+        int[] columns = new int[Connect4ArchiveWriter.MAX_MOVES];
+        try (Connect4ArchiveWriter writer = new Connect4ArchiveWriter(file)) {
+            String[] names = {"alice", "bob", "carol"};
+            for (int i = 0; i < games; i++) {
+                int moves = archivedMoves(i, columns);
+                writer.writeGame(writer.player(names[i % 3]), writer.player(names[(i + 1) % 3]),
+                        i % (Connect4Model.DRAW + 1), archivedStart(i), archivedStart(i) + i % 5 * 1000 - 1500,
+                        columns, moves);
+            }
+            assertEquals(games, writer.getGameCount());
+        }
+
+        try (Connect4ArchiveReader reader = new Connect4ArchiveReader(file)) {
+            assertEquals(games, reader.getGameCount());
+            assertEquals("carol", reader.getPlayerName(2));
+            int second = Connect4ArchiveWriter.GAMES_PER_BLOCK + 37;
+            reader.seek(second);
+            checkArchivedGames(reader, second, games);
+            reader.seek(Connect4ArchiveWriter.GAMES_PER_BLOCK - 3);
+            checkArchivedGames(reader, Connect4ArchiveWriter.GAMES_PER_BLOCK - 3, games);
+            reader.seek(0);
+            assertTrue(reader.next());
+            assertEquals(0, reader.getGame());
+            assertEquals(archivedStart(0), reader.getStartMillis());
+        }
+    }
+
+    /**
+     * Read games from an archive written by testArchive and check them against the games that were written
+     *
+     * @param reader the reader, positioned so next reads the first game
+     * @param first  number of the first game to read
+     * @param games  number of games in the archive
+     */
+    private static void checkArchivedGames(Connect4ArchiveReader reader, int first, int games) throws IOException {
+        int[] columns = new int[Connect4ArchiveWriter.MAX_MOVES];
+        for (int i = first; i < games; i++) {
+            assertTrue(reader.next());
+            assertEquals(i, reader.getGame());
+            assertEquals(i % 3, reader.getYellow());
+            assertEquals((i + 1) % 3, reader.getRed());
+            assertEquals(i % (Connect4Model.DRAW + 1), reader.getResult());
+            assertEquals(archivedStart(i), reader.getStartMillis());
+            assertEquals(archivedStart(i) + i % 5 * 1000 - 1500, reader.getEndMillis());
+            int moves = archivedMoves(i, columns);
+            assertEquals(moves, reader.getMoveCount());
+            for (int j = 0; j < moves; j++)
+                assertEquals(columns[j], reader.nextMove());
+            assertEquals(-1, reader.nextMove());
+        }
+        assertFalse(reader.next());
+    }
+
+    /**
+     * Returns when testArchive says a game started. Every third game starts before the game before it
+     *
+     * @param game number of the game
+     * @return - long milliseconds since the epoch
+     */
+    private static long archivedStart(int game) {
+        return 1_700_000_000_000L + game * 60_000L - (game % 3 == 0 ? 90_000 : 0);
+    }
+
+    /**
+     * Fill in the moves testArchive archives for a game
+     *
+     * @param game    number of the game
+     * @param columns array receiving the column of every move
+     * @return - int number of moves
+     */
+    private static int archivedMoves(int game, int[] columns) {
+        int moves = game % 43;
+        for (int i = 0; i < moves; i++)
+            columns[i] = (game * 7 + i * 3) % 8;
+        return moves;
+    }
+
+    /**
+     * Drop circles of one color into the given columns in order
+     *
+     * @param model   the board to drop into
+     * @param color   the color of every circle
+     * @param columns the columns to drop into
+     */
+    private static void drop(Connect4Model model, int color, int... columns) {
+        for (int column : columns)
+            model.updateCircle(column, color);
+    }
 }
 
 
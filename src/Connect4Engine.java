@@ -0,0 +1,28 @@
+/**
+ * Connect4Engine.java Authors: Jeff Wiederkehr and Chris Herrera
+ *
+ * This interface is implemented by every computer player. An engine looks at the current position of a model and
+ * picks the column to play, the caller is the one that actually drops the circle.
+ */
+public interface Connect4Engine {
+
+    /**
+     * Find the column for the given color to play using the engine's own limits. The model is left exactly as it was
+     * found
+     *
+     * @param model the game to look at, it must not be changed by anyone else in the meantime
+     * @param color the color to move, 1 = yellow and 2 = red
+     * @return - int column to play or -1 if there is no legal move
+     */
+    int bestMove(Connect4Model model, int color);
+
+    /**
+     * Find the column for the given color to play within a time budget. The model is left exactly as it was found
+     *
+     * @param model    the game to look at, it must not be changed by anyone else in the meantime
+     * @param color    the color to move, 1 = yellow and 2 = red
+     * @param moveTime milliseconds to think for, or 0 to use the engine's own limits
+     * @return - int column to play or -1 if there is no legal move
+     */
+    int bestMove(Connect4Model model, int color, long moveTime);
+}
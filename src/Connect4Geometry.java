@@ -0,0 +1,299 @@
+import java.util.SplittableRandom;
+
+/**
+ * Connect4Geometry.java Authors: Jeff Wiederkehr and Chris Herrera
+ *
+ * This class describes the board a game is played on: the number of rows and columns and how many circles in a line
+ * win. The standard game is STANDARD, 6 rows by 7 columns with lines of 4, but any board of up to MAX_SIZE rows and
+ * columns can be played, like 7 rows by 8 or 9 columns or connect 5 on 10 by 10.
+ *
+ * The cells are numbered for the bitboards of Connect4Model: column by column from the bottom, with rows + 1 bits per
+ * column so the bit on top of every column is always empty and lines never wrap from one column into the next. A board
+ * of at most 64 bits fits in one long, and the bitboard methods of this class find the playable cells and every cell
+ * that completes a line for the whole board at once with a few shifts. Larger boards are spread over several longs by
+ * the model.
+ *
+ * The random numbers of the Zobrist hashes are kept here too, drawn from a fixed seed in the order of the bit indexes,
+ * so every model on the same board shares them and the standard board hashes the same in every run.
+ *
+ * A geometry never changes once it is constructed, and two geometries of the same size and line length are equal.
+ */
+public class Connect4Geometry {
+    public static final int MAX_SIZE = 16;
+    public static final Connect4Geometry STANDARD = new Connect4Geometry(6, 7, 4);
+    private static final long ZOBRIST_SEED = 0x436F6E6E65637434L;
+    private final int rows;
+    private final int columns;
+    private final int connect;
+    // bits used by a single column including the empty sentinel bit on top
+    final int columnBits;
+    // bits used by the whole board and the number of longs they take
+    final int bits;
+    final int words;
+    // the bottom cell and every playable cell of every column, only used when the board fits in one long
+    private final long bottom;
+    private final long boardMask;
+    private final int[] moveOrder;
+    // bit distance between two neighbours for every direction a line fits in, up first
+    private final int[] steps;
+    // true for lines of 4 in every direction, which are found with unrolled shifts
+    private final boolean fourInEveryDirection;
+    // the Zobrist number of every color and bit index, color * bits + index, and of the mirrored cell
+    final long[] zobrist;
+    final long[] mirrorZobrist;
+
+    /**
+     * Construct the geometry of a board
+     *
+     * @param rows    number of rows, 1 to MAX_SIZE
+     * @param columns number of columns, 1 to MAX_SIZE
+     * @param connect number of circles in a line that win, at least 2 and at most the number of rows or columns
+     * @throws IllegalArgumentException if the board is too small or too large or the line does not fit on it
+     */
+    public Connect4Geometry(int rows, int columns, int connect) throws IllegalArgumentException {
+        if (rows < 1 || rows > MAX_SIZE || columns < 1 || columns > MAX_SIZE)
+            throw new IllegalArgumentException("A board has 1 to " + MAX_SIZE + " rows and columns");
+        if (connect < 2 || connect > Math.max(rows, columns))
+            throw new IllegalArgumentException("A line has 2 to " + Math.max(rows, columns) + " circles on a " +
+                    rows + " by " + columns + " board");
+        this.rows = rows;
+        this.columns = columns;
+        this.connect = connect;
+        columnBits = rows + 1;
+        bits = columns * columnBits;
+        words = (bits + Long.SIZE - 1) / Long.SIZE;
+        long bottomCells = 0L;
+        if (words == 1)
+            for (int column = 0; column < columns; column++)
+                bottomCells |= 1L << (column * columnBits);
+        bottom = bottomCells;
+        boardMask = bottom * ((1L << rows) - 1);
+        moveOrder = new int[columns];
+        // center first, the left column before the right one at the same distance from the center
+        for (int i = 0, left = (columns - 1) / 2, right = left + 1; i < columns; i++) {
+            if (right == columns || left >= 0 && columns - 1 - 2 * left <= 2 * right - (columns - 1))
+                moveOrder[i] = left--;
+            else
+                moveOrder[i] = right++;
+        }
+        boolean vertical = rows >= connect;
+        boolean horizontal = columns >= connect;
+        int count = (vertical ? 1 : 0) + (horizontal ? 1 : 0) + (vertical && horizontal ? 2 : 0);
+        steps = new int[count];
+        count = 0;
+        if (vertical)
+            steps[count++] = 1;
+        if (horizontal)
+            steps[count++] = columnBits;
+        if (vertical && horizontal) {
+            steps[count++] = columnBits - 1;
+            steps[count] = columnBits + 1;
+        }
+        fourInEveryDirection = connect == 4 && steps.length == 4;
+        zobrist = new long[3 * bits];
+        mirrorZobrist = new long[3 * bits];
+        SplittableRandom random = new SplittableRandom(ZOBRIST_SEED);
+        for (int i = bits; i < zobrist.length; i++)
+            zobrist[i] = random.nextLong();
+        for (int color = 1; color < 3; color++)
+            for (int index = 0; index < bits; index++)
+                mirrorZobrist[color * bits + index] = zobrist[color * bits + (columns - 1 - index / columnBits)
+                        * columnBits + index % columnBits];
+    }
+
+    /**
+     * Returns the number of rows
+     *
+     * @return - int height of the board
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns
+     *
+     * @return - int width of the board
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns how many circles in a line win
+     *
+     * @return - int length of a winning line
+     */
+    public int getConnect() {
+        return connect;
+    }
+
+    /**
+     * Returns the number of circles that fit on the board
+     *
+     * @return - int rows times columns
+     */
+    public int getCells() {
+        return rows * columns;
+    }
+
+    /**
+     * Check if a bitboard of this board fits in one long, which the bitboard methods of this class need
+     *
+     * @return - boolean true if the board has at most 64 bits including the sentinel bits
+     */
+    public boolean fitsLong() {
+        return words == 1;
+    }
+
+    /**
+     * Returns the columns ordered from the center out, center columns take part in the most lines. The array is
+     * shared and must not be changed
+     *
+     * @return - int[] every column once, the center first
+     */
+    int[] getMoveOrder() {
+        return moveOrder;
+    }
+
+    /**
+     * Returns the bit distance between two neighbours of every direction a line fits in: 1 up a column, columnBits
+     * along a row and columnBits - 1 and columnBits + 1 along the diagonals. A direction the board is too small for is
+     * left out. The array is shared and must not be changed
+     *
+     * @return - int[] step of every direction
+     */
+    int[] getSteps() {
+        return steps;
+    }
+
+    /**
+     * Returns a key that is unique for every position of a board that fits in one long. Adding the bottom row to the
+     * mask sets the bit just above the top circle of every column, and the circles of the color to move sit below that
+     * bit
+     *
+     * @param own  bitboard of the color to move
+     * @param mask bitboard of every occupied cell
+     * @return - long key of the position, never 0
+     */
+    long positionKey(long own, long mask) {
+        return own + mask + bottom;
+    }
+
+    /**
+     * Returns the cells of a board that fits in one long where a circle can be dropped right now, which is the lowest
+     * empty cell of every column that is not full
+     *
+     * @param mask bitboard of every occupied cell
+     * @return - long with one bit set per playable cell
+     */
+    long possibleCells(long mask) {
+        return (mask + bottom) & boardMask;
+    }
+
+    /**
+     * Returns every empty cell of a board that fits in one long that would complete a line for the given bitboard,
+     * whether or not a circle can be dropped there yet
+     *
+     * @param board bitboard of a single color
+     * @param mask  bitboard of every occupied cell
+     * @return - long with one bit set per winning empty cell
+     */
+    long winningCells(long board, long mask) {
+        long cells;
+        if (fourInEveryDirection) {
+            // vertical
+            cells = (board << 1) & (board << 2) & (board << 3);
+            cells |= fourCells(board, columnBits);
+            cells |= fourCells(board, columnBits - 1);
+            cells |= fourCells(board, columnBits + 1);
+        } else {
+            cells = 0L;
+            for (int step : steps)
+                cells |= lineCells(board, step);
+        }
+        return cells & (boardMask ^ mask);
+    }
+
+    /**
+     * Returns the cells that complete a line of 4 along one direction with three circles of the board, the missing
+     * circle can be at either end or in one of the two middle spots
+     *
+     * @param board bitboard of a single color
+     * @param step  distance in bits between two neighbours on the line
+     * @return - long with one bit set per cell that completes a line
+     */
+    private static long fourCells(long board, int step) {
+        long pair = (board << step) & (board << 2 * step);
+        long cells = pair & (board << 3 * step);
+        cells |= pair & (board >>> step);
+        pair = (board >>> step) & (board >>> 2 * step);
+        cells |= pair & (board << step);
+        cells |= pair & (board >>> 3 * step);
+        return cells;
+    }
+
+    /**
+     * Returns the cells that complete a line of any length along one direction, trying every split of the other
+     * circles of the line between the two sides of the cell. A line only fits in a direction when its shifts stay
+     * below 64 bits
+     *
+     * @param board bitboard of a single color
+     * @param step  distance in bits between two neighbours on the line
+     * @return - long with one bit set per cell that completes a line
+     */
+    private long lineCells(long board, int step) {
+        long cells = 0L;
+        for (int below = 0; below < connect; below++) {
+            long line = -1L;
+            for (int i = 1; i <= below; i++)
+                line &= board << i * step;
+            for (int i = 1; i < connect - below; i++)
+                line &= board >>> i * step;
+            cells |= line;
+        }
+        return cells;
+    }
+
+    /**
+     * Returns the bits of every playable cell in the given column of a board that fits in one long
+     *
+     * @param column specifies the column
+     * @return - long with the bits of that column set
+     */
+    long columnMask(int column) {
+        return ((1L << rows) - 1) << (column * columnBits);
+    }
+
+    /**
+     * Compare the size and line length with another geometry
+     *
+     * @param other the object to compare with
+     * @return - boolean true if other is a geometry of the same board
+     */
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Connect4Geometry && ((Connect4Geometry) other).rows == rows
+                && ((Connect4Geometry) other).columns == columns && ((Connect4Geometry) other).connect == connect;
+    }
+
+    /**
+     * Returns a hash code of the size and line length
+     *
+     * @return - int hash code that is equal for equal geometries
+     */
+    @Override
+    public int hashCode() {
+        return (rows * 31 + columns) * 31 + connect;
+    }
+
+    /**
+     * Describe the board
+     *
+     * @return - String like 6x7 connect 4, rows first
+     */
+    @Override
+    public String toString() {
+        return rows + "x" + columns + " connect " + connect;
+    }
+}
@@ -0,0 +1,248 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Connect4Journal.java Authors: Jeff Wiederkehr and Chris Herrera
+ *
+ * This class appends every move played on a Connect4Model to a memory mapped file, so the games survive the process
+ * for disputes and as training data for the computer player. Recording a move stores one byte in the mapped pages and
+ * the new end of the journal in the header, both plain memory writes without a system call, and the operating system
+ * writes the pages to the file in the background. The file grows one mapped chunk at a time.
+ *
+ * The file starts with a 16 byte header holding the magic number, the version and the offset of the end of the last
+ * record. Every game starts with a GAME byte followed by the time the game started as a long of milliseconds since
+ * the epoch and one byte each for the rows, columns and line length of its Connect4Geometry, and every move is one
+ * byte with the column in the upper 6 bits and the color in the lower 2 bits like a Connect4Protocol move. A move that
+ * is taken back is recorded as an UNDO byte, so a dispute can see it was played. A game ends where the next one
+ * starts. Connect4Replay reads the journal back.
+ *
+ * A journal is written by one model on one thread, and the file is locked so no other process appends to it.
+ */
+public class Connect4Journal implements Closeable {
+    public static final String DEFAULT_FILE = "connect4.journal";
+    static final int MAGIC = 0x43344A4E;
+    static final int VERSION = 2;
+    static final int HEADER_BYTES = 16;
+    static final int GAME = 0xFF;
+    // column 63 does not exist, so this is never a move
+    static final int UNDO = 0xFE;
+    static final int GAME_BYTES = 1 + Long.BYTES + 3;
+    static final int CHUNK_BYTES = 1 << 20;
+    // Connect4Replay maps the whole journal in one buffer
+    static final long MAX_BYTES = Integer.MAX_VALUE;
+    private final Path file;
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final MappedByteBuffer header;
+    private MappedByteBuffer chunk;
+    private long chunkStart;
+    private long end;
+    private boolean inGame = false;
+    private boolean full = false;
+    private Connect4Geometry geometry = Connect4Geometry.STANDARD;
+
+    /**
+     * Open the journal in the given file for appending, creating it if it does not exist
+     *
+     * @param file the journal file
+     * @throws IOException if the file can't be opened, is not a journal or another process appends to it
+     */
+    public Connect4Journal(Path file) throws IOException {
+        this.file = file;
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE);
+        try {
+            lock = tryLock(channel);
+            if (lock == null)
+                throw new IOException("Journal is used by another writer: " + file);
+            long size = channel.size();
+            if (size != 0 && size < HEADER_BYTES)
+                throw new IOException("Not a journal: " + file);
+            header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            if (size == 0) {
+                header.putInt(0, MAGIC).putInt(4, VERSION).putLong(8, HEADER_BYTES);
+            } else if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException("Not a journal: " + file);
+            }
+            end = header.getLong(8);
+            if (end < HEADER_BYTES || end > Math.max(size, HEADER_BYTES))
+                throw new IOException("Journal is truncated: " + file);
+            mapChunk(end - end % CHUNK_BYTES);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Open the default journal in the working directory. When another process on the machine, like the other player
+     * of a local game, already appends to it the next free numbered journal is used. A journal that can't be opened
+     * is reported and the game is played without one
+     *
+     * @return - Connect4Journal or null if no journal could be opened
+     */
+    public static Connect4Journal openDefault() {
+        String name = DEFAULT_FILE.substring(0, DEFAULT_FILE.lastIndexOf('.'));
+        for (int i = 0; i < 16; i++) {
+            Path file = Paths.get(i == 0 ? DEFAULT_FILE : name + "-" + i + ".journal");
+            try {
+                return new Connect4Journal(file);
+            } catch (IOException e) {
+                if (!e.getMessage().startsWith("Journal is used")) {
+                    System.err.println("Something went wrong with the journal! " + e.getMessage());
+                    return null;
+                }
+            }
+        }
+        System.err.println("Something went wrong with the journal! Every journal is in use");
+        return null;
+    }
+
+    /**
+     * Set the board of the games that start from now on. Connect4Model sets it when it is given the journal and when
+     * its board changes
+     *
+     * @param geometry the size of the board and the length of a winning line
+     */
+    public void setGeometry(Connect4Geometry geometry) {
+        this.geometry = geometry;
+    }
+
+    /**
+     * Append a move. The first move after endGame starts a new game
+     *
+     * @param column the column the circle was dropped in, 0 to 62
+     * @param color  the color of the circle, 1 or 2
+     */
+    public void recordMove(int column, int color) {
+        if (full)
+            return;
+        if (end + GAME_BYTES + 1 > MAX_BYTES) {
+            full = true;
+            System.err.println("Something went wrong with the journal! " + file + " is full");
+            return;
+        }
+        if (!inGame) {
+            put(GAME);
+            long started = System.currentTimeMillis();
+            for (int shift = 56; shift >= 0; shift -= 8)
+                put((int) (started >>> shift));
+            put(geometry.getRows());
+            put(geometry.getColumns());
+            put(geometry.getConnect());
+            inGame = true;
+        }
+        put(column << 2 | color);
+        // the end is moved last so a reader never sees half a record
+        if (!full)
+            header.putLong(8, end);
+    }
+
+    /**
+     * Append that the last move of the current game was taken back
+     */
+    public void recordUndo() {
+        if (full || !inGame)
+            return;
+        if (end + 1 > MAX_BYTES) {
+            full = true;
+            System.err.println("Something went wrong with the journal! " + file + " is full");
+            return;
+        }
+        put(UNDO);
+        if (!full)
+            header.putLong(8, end);
+    }
+
+    /**
+     * End the current game, the next move starts a new one
+     */
+    public void endGame() {
+        inGame = false;
+    }
+
+    /**
+     * Returns the size of the journal
+     *
+     * @return - long offset of the end of the last record
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * Write the journal to the disk now instead of when the operating system gets to it. Only needed to survive a
+     * crash of the machine, the pages survive a crash of the process
+     */
+    public void force() {
+        chunk.force();
+        header.force();
+    }
+
+    /**
+     * Write the journal to the disk and close the file
+     */
+    @Override
+    public void close() {
+        try {
+            force();
+            lock.release();
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Something went wrong closing the journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lock the whole file for this process
+     *
+     * @param channel the open journal file
+     * @return - FileLock or null if another process or another journal in this process holds the lock
+     * @throws IOException if the file can't be locked
+     */
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Store one byte at the end of the journal, mapping the next chunk when the current one is full
+     *
+     * @param value the byte to store
+     */
+    private void put(int value) {
+        if (full)
+            return;
+        if (end == chunkStart + CHUNK_BYTES) {
+            try {
+                mapChunk(end);
+            } catch (IOException e) {
+                full = true;
+                System.err.println("Something went wrong with the journal! " + e.getMessage());
+                return;
+            }
+        }
+        chunk.put((int) (end++ - chunkStart), (byte) value);
+    }
+
+    /**
+     * Map the chunk of the file starting at the given offset, which grows the file when it is shorter
+     *
+     * @param start offset of the chunk, a multiple of CHUNK_BYTES
+     * @throws IOException if the file can't be mapped
+     */
+    private void mapChunk(long start) throws IOException {
+        chunk = channel.map(FileChannel.MapMode.READ_WRITE, start, Math.min(CHUNK_BYTES, MAX_BYTES - start));
+        chunkStart = start;
+    }
+}
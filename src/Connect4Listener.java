@@ -0,0 +1,37 @@
+/**
+ * Connect4Listener.java Authors: Jeff Wiederkehr and Chris Herrera
+ *
+ * This interface is implemented by everything that follows the changes of a Connect4Model, like the view. The model
+ * calls it with plain ints, so telling a listener about a move creates no objects. Every method does nothing by
+ * default, so a listener only implements the changes it cares about.
+ *
+ * A listener added with Connect4Model.addListener is called on the thread that changed the model, before the change
+ * returns. A listener added with an Executor is called on that executor instead, in the order of the changes.
+ */
+public interface Connect4Listener {
+
+    /**
+     * Called when a circle was dropped into the board or taken back
+     *
+     * @param row    the row of the circle, counted from the top
+     * @param column the column of the circle
+     * @param color  the color of the circle, 1 = yellow and 2 = red, or 0 when the circle was taken back and the cell
+     *               is empty again
+     */
+    default void onMove(int row, int column, int color) {
+    }
+
+    /**
+     * Called when the board was cleared for a new game, which may be on a board of another size
+     */
+    default void onReset() {
+    }
+
+    /**
+     * Called after onMove when the move ended the game
+     *
+     * @param result the color of the winner or Connect4Model.DRAW
+     */
+    default void onGameOver(int result) {
+    }
+}
@@ -0,0 +1,244 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntSupplier;
+
+/**
+ * Connect4LoadTest.java Authors: Jeff Wiederkehr and Chris Herrera
+ *
+ * This class measures how many games one server process can hold. It starts a Connect4ThreadServer or a
+ * Connect4Server in this process, connects two players per game and waits until every game has started. With all
+ * games open and idle it reports the OS threads and heap of the process, which is what limits how many mostly idle
+ * human games fit on a node. Then a few driver threads play moves in every game, round after round, and the report
+ * gives the moves per second and the time from sending a move to the opponent reading it.
+ *
+ * The players use blocking sockets driven by the driver threads, so the client side adds a fixed number of threads
+ * whatever the number of games. Every game needs four file descriptors in this process, two per player connection.
+ *
+ * Usage: java Connect4LoadTest [threads|selector] [games] [rounds] [drivers]
+ */
+public class Connect4LoadTest {
+    public static final int DEFAULT_GAMES = 1000;
+    // the columns of a game that fills the standard board in a draw, yellow first, so no game ends before its rounds
+    static final int[] DRAW_MOVES = {0, 0, 1, 1, 2, 2, 4, 3, 4, 4, 5, 5, 6, 6, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6,
+            0, 0, 1, 1, 2, 2, 3, 3, 4, 5, 6, 5, 3, 6};
+    private final String mode;
+    private final int games;
+    private final int rounds;
+    private final int drivers;
+
+    /**
+     * Construct a load test
+     *
+     * @param mode    threads for Connect4ThreadServer or selector for Connect4Server
+     * @param games   number of games to open at the same time
+     * @param rounds  number of moves played in every game, at most a full board
+     * @param drivers number of threads playing the moves
+     * @throws IllegalArgumentException if the mode is unknown or the rounds don't fit on the board
+     */
+    public Connect4LoadTest(String mode, int games, int rounds, int drivers) throws IllegalArgumentException {
+        if (!mode.equals("threads") && !mode.equals("selector"))
+            throw new IllegalArgumentException("Unknown server mode " + mode + ", use threads or selector");
+        if (rounds < 0 || rounds > Connect4Geometry.STANDARD.getCells())
+            throw new IllegalArgumentException("Rounds must be between 0 and a full board");
+        this.mode = mode;
+        this.games = games;
+        this.rounds = rounds;
+        this.drivers = drivers;
+    }
+
+    /**
+     * Run a load test from the command line and print the report
+     *
+     * @param args server mode, games, rounds and drivers, every argument is optional
+     * @throws Exception if the server can't be started or a game fails
+     */
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "threads";
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_GAMES;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        int drivers = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+        new Connect4LoadTest(mode, games, rounds, drivers).run();
+    }
+
+    /**
+     * Start the server, open every game, play the rounds and print the report
+     *
+     * @throws IOException          if the server can't be started or a connection fails
+     * @throws InterruptedException if the test is interrupted
+     */
+    public void run() throws IOException, InterruptedException {
+        int baseThreads = ManagementFactory.getThreadMXBean().getThreadCount();
+        long baseHeap = usedHeap();
+        Closeable server;
+        int port;
+        IntSupplier gameCount;
+        Connect4Lobby<?> lobby;
+        if (mode.equals("threads")) {
+            Connect4ThreadServer threaded = new Connect4ThreadServer(0);
+            System.out.println("thread per connection server, " + (threaded.isVirtual() ? "virtual" : "platform") +
+                    " threads");
+            server = threaded;
+            port = threaded.getPort();
+            gameCount = threaded::getGameCount;
+            lobby = threaded.getLobby();
+        } else {
+            int loops = Runtime.getRuntime().availableProcessors();
+            Connect4Server selector = new Connect4Server(0, loops);
+            System.out.println("selector server, " + loops + " event loops");
+            server = selector;
+            port = selector.getPort();
+            gameCount = selector::getGameCount;
+            lobby = selector.getLobby();
+        }
+        Client[][] players = new Client[games][];
+        try {
+            long start = System.nanoTime();
+            for (int game = 0; game < games; game++)
+                players[game] = connect(port);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d games opened in %.2f s, %.0f connections/s, server reports %d games%n", games,
+                    seconds, 2 * games / seconds, gameCount.getAsInt());
+            System.out.println(lobby);
+            int threads = ManagementFactory.getThreadMXBean().getThreadCount() - baseThreads;
+            long heap = usedHeap() - baseHeap;
+            System.out.printf("idle: %d more OS threads, %.1f MB more heap, %.1f KB heap per game%n", threads,
+                    heap / 1e6, heap / 1e3 / Math.max(1, games));
+            play(players);
+        } finally {
+            for (Client[] game : players)
+                if (game != null)
+                    for (Client player : game)
+                        player.socket.close();
+            server.close();
+        }
+    }
+
+    /**
+     * Connect the two players of a game and wait for both to be told their color
+     *
+     * @param port the port of the server
+     * @return - Client[] the yellow and the red player
+     * @throws IOException if a connection fails or the server does not start the game
+     */
+    private static Client[] connect(int port) throws IOException {
+        Client first = new Client(port);
+        Client second = new Client(port);
+        int firstColor = first.expect(Connect4Protocol.START);
+        second.expect(Connect4Protocol.START);
+        return firstColor == Connect4MoveMessage.YELLOW ? new Client[]{first, second} : new Client[]{second, first};
+    }
+
+    /**
+     * Split the games over the driver threads, play every round and print the move rate and latency
+     *
+     * @param players the yellow and red player of every game
+     * @throws InterruptedException if the test is interrupted
+     */
+    private void play(Client[][] players) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(drivers);
+        List<Future<long[]>> running = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < drivers; i++) {
+            int from = (int) ((long) games * i / drivers);
+            int to = (int) ((long) games * (i + 1) / drivers);
+            running.add(pool.submit(() -> playGames(Arrays.copyOfRange(players, from, to))));
+        }
+        long[] latencies = new long[0];
+        try {
+            for (Future<long[]> future : running)
+                latencies = Connect4Tournament.concat(latencies, future.get());
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Load test game failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d moves in %.2f s, %.0f moves/s on %d drivers%n", latencies.length, seconds,
+                latencies.length / seconds, drivers);
+        System.out.println("move latency " + Connect4Tournament.percentiles(latencies));
+    }
+
+    /**
+     * Play every round in a slice of the games, one move per game per round. Runs on a driver thread
+     *
+     * @param games the yellow and red player of every game in the slice
+     * @return - long[] the time from sending every move to the opponent reading it in nanoseconds
+     * @throws IOException if a move is not passed on
+     */
+    private long[] playGames(Client[][] games) throws IOException {
+        long[] latencies = new long[games.length * rounds];
+        int moves = 0;
+        for (int round = 0; round < rounds; round++) {
+            // every move is legal and nobody wins before the board is full
+            int column = DRAW_MOVES[round];
+            for (Client[] game : games) {
+                Client mover = game[round & 1];
+                Client opponent = game[1 - (round & 1)];
+                long begin = System.nanoTime();
+                mover.protocol.writeMove(column, mover.color);
+                if (opponent.expect(Connect4Protocol.MOVE) != mover.color || opponent.protocol.getColumn() != column)
+                    throw new IOException("The server passed on a different move");
+                latencies[moves++] = System.nanoTime() - begin;
+            }
+        }
+        return latencies;
+    }
+
+    /**
+     * Returns the heap in use after a garbage collection
+     *
+     * @return - long bytes of heap in use
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * One player connection of the load test
+     */
+    private static final class Client {
+        final Socket socket;
+        final Connect4Protocol protocol;
+        int color;
+
+        /**
+         * Connect a player to the server
+         *
+         * @param port the port of the server
+         * @throws IOException if the connection fails
+         */
+        Client(int port) throws IOException {
+            socket = new Socket("localhost", port);
+            socket.setTcpNoDelay(true);
+            protocol = new Connect4Protocol(socket.getInputStream(), socket.getOutputStream());
+            protocol.writeJoin(Connect4Lobby.HUMAN, Connect4Geometry.STANDARD);
+        }
+
+        /**
+         * Read the next message and check its type
+         *
+         * @param type the message type that should arrive
+         * @return - int the color of the message
+         * @throws IOException if another message arrives or the connection fails
+         */
+        int expect(int type) throws IOException {
+            int read = protocol.read();
+            if (read != type)
+                throw new IOException("Expected message " + type + " but the server sent " + read);
+            if (type == Connect4Protocol.START)
+                color = protocol.getColor();
+            return protocol.getColor();
+        }
+    }
+}
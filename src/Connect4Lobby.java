@@ -0,0 +1,223 @@
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Connect4Lobby.java Authors: Jeff Wiederkehr and Chris Herrera
+ *
+ * This class pairs players that want to play the same kind of game. Every player joins one of 256 queues: humans
+ * wait in HUMAN, the alpha-beta search waits in the queue of its search depth and Monte Carlo Tree Search in MCTS, so
+ * people play people and computers play computers of the same strength. A player joining a queue that has someone
+ * waiting is paired with the player that waited longest, otherwise it waits itself.
+ *
+ * Every queue has its own lock, so players joining different queues never wait for each other and a join only holds
+ * its lock for a few instructions. The lobby counts the players waiting in every queue, the matches made and how long
+ * the matched players waited. It keeps no threads or sockets of its own, the servers call it from their threads and a
+ * test can call it directly.
+ *
+ * @param <P> the type the server uses for a waiting player
+ */
+public class Connect4Lobby<P> {
+    public static final int HUMAN = 0;
+    public static final int MCTS = 255;
+    public static final int QUEUES = 256;
+    private final WaitingQueue<P>[] queues;
+    private final LongAdder matches = new LongAdder();
+    private final LongAdder totalWait = new LongAdder();
+    private final AtomicLong maxWait = new AtomicLong();
+
+    /**
+     * Construct an empty Connect4Lobby
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Connect4Lobby() {
+        queues = new WaitingQueue[QUEUES];
+        for (int i = 0; i < QUEUES; i++)
+            queues[i] = new WaitingQueue<>();
+    }
+
+    /**
+     * Returns the queue a player joins
+     *
+     * @param computer true for a computer player, false for a human
+     * @param mcts     true if the computer uses Monte Carlo Tree Search
+     * @param depth    search depth of the alpha-beta search
+     * @return - int HUMAN, MCTS or the search depth between 1 and 254
+     */
+    public static int queueFor(boolean computer, boolean mcts, int depth) {
+        if (!computer)
+            return HUMAN;
+        return mcts ? MCTS : Math.max(1, Math.min(depth, MCTS - 1));
+    }
+
+    /**
+     * Join a queue. If another player waits in it the two are paired and that player is returned, it waited longer so
+     * it moves first. Otherwise the player waits until someone else joins or it leaves. A player that joins again
+     * while it is the next to be paired keeps waiting and is never paired with itself
+     *
+     * @param queue  the queue to join, 0 to 255
+     * @param player the player joining
+     * @return - P the opponent the player is paired with, or null if the player now waits
+     * @throws IllegalArgumentException if there is no such queue
+     */
+    public P join(int queue, P player) throws IllegalArgumentException {
+        Waiting<P> opponent;
+        WaitingQueue<P> waiting = queue(queue);
+        synchronized (waiting) {
+            opponent = waiting.players.peekFirst();
+            if (opponent != null && opponent.player == player)
+                return null;
+            opponent = waiting.players.pollFirst();
+            if (opponent == null) {
+                waiting.players.addLast(new Waiting<>(player, System.nanoTime()));
+                waiting.depth = waiting.players.size();
+                return null;
+            }
+            waiting.depth = waiting.players.size();
+        }
+        long wait = System.nanoTime() - opponent.since;
+        matches.increment();
+        totalWait.add(wait);
+        maxWait.accumulateAndGet(wait, Math::max);
+        return opponent.player;
+    }
+
+    /**
+     * Take a waiting player out of its queue, for example because it disconnected. This searches the queue, which
+     * only matters for queues with very many players waiting
+     *
+     * @param queue  the queue the player joined
+     * @param player the player leaving
+     * @return - boolean true if the player was waiting, false if it was already paired or never joined
+     * @throws IllegalArgumentException if there is no such queue
+     */
+    public boolean leave(int queue, P player) throws IllegalArgumentException {
+        WaitingQueue<P> waiting = queue(queue);
+        synchronized (waiting) {
+            for (Iterator<Waiting<P>> it = waiting.players.iterator(); it.hasNext(); ) {
+                if (it.next().player == player) {
+                    it.remove();
+                    waiting.depth = waiting.players.size();
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of players waiting in a queue
+     *
+     * @param queue the queue to look at
+     * @return - int players waiting
+     * @throws IllegalArgumentException if there is no such queue
+     */
+    public int getQueueDepth(int queue) throws IllegalArgumentException {
+        return queue(queue).depth;
+    }
+
+    /**
+     * Returns the number of players waiting in every queue together
+     *
+     * @return - int players waiting
+     */
+    public int getWaitingCount() {
+        int waiting = 0;
+        for (WaitingQueue<P> queue : queues)
+            waiting += queue.depth;
+        return waiting;
+    }
+
+    /**
+     * Returns the number of pairs made since the lobby was created
+     *
+     * @return - long matches made
+     */
+    public long getMatchCount() {
+        return matches.sum();
+    }
+
+    /**
+     * Returns how long the player that waited for a match waited on average
+     *
+     * @return - double average wait in milliseconds, 0 before the first match
+     */
+    public double getAverageWaitMillis() {
+        long count = matches.sum();
+        return count == 0 ? 0 : totalWait.sum() / 1e6 / count;
+    }
+
+    /**
+     * Returns the longest a matched player waited
+     *
+     * @return - double longest wait in milliseconds
+     */
+    public double getMaxWaitMillis() {
+        return maxWait.get() / 1e6;
+    }
+
+    /**
+     * Describe the waiting players and the waits of the matches made
+     *
+     * @return - String with the queue depths that are not empty and the wait times
+     */
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("lobby: %d waiting, %d matches, wait avg %.2f ms max %.2f ms", getWaitingCount(),
+                getMatchCount(), getAverageWaitMillis(), getMaxWaitMillis()));
+        for (int i = 0; i < QUEUES; i++) {
+            int depth = queues[i].depth;
+            if (depth > 0)
+                report.append(String.format(", %s %d", i == HUMAN ? "human" : i == MCTS ? "mcts" : "depth " + i,
+                        depth));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Returns the queue with the given number
+     *
+     * @param queue the queue number
+     * @return - WaitingQueue the queue
+     * @throws IllegalArgumentException if there is no such queue
+     */
+    private WaitingQueue<P> queue(int queue) throws IllegalArgumentException {
+        if (queue < 0 || queue >= QUEUES)
+            throw new IllegalArgumentException("There is no lobby queue " + queue);
+        return queues[queue];
+    }
+
+    /**
+     * The players waiting in one queue, oldest first. The deque is guarded by the queue itself, the depth can be read
+     * without the lock
+     *
+     * @param <P> the type of a waiting player
+     */
+    private static final class WaitingQueue<P> {
+        final ArrayDeque<Waiting<P>> players = new ArrayDeque<>();
+        volatile int depth = 0;
+    }
+
+    /**
+     * A waiting player and when it started waiting
+     *
+     * @param <P> the type of a waiting player
+     */
+    private static final class Waiting<P> {
+        final P player;
+        final long since;
+
+        /**
+         * Construct a Waiting entry
+         *
+         * @param player the player
+         * @param since  System.nanoTime when the player joined
+         */
+        Waiting(P player, long since) {
+            this.player = player;
+            this.since = since;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+/**
+ * Connect4LoopbackTransport.java Authors: Jeff Wiederkehr and Chris Herrera
+ *
+ * This class connects two Connect4Controllers in the same process without a socket. A pair of transports shares two
+ * ring buffers, one per direction, so a move goes from one controller to the other with a copy of its two bytes and
+ * no system call, port or network stack. Any number of pairs can play at the same time, which is what simulations,
+ * tests and computer against computer batches need.
+ */
+public class Connect4LoopbackTransport implements Connect4Transport {
+    static final int PIPE_BYTES = 4096;
+    private final Pipe in;
+    private final Pipe out;
+
+    /**
+     * Construct one end of a loopback connection
+     *
+     * @param in  the pipe the other end writes to
+     * @param out the pipe the other end reads from
+     */
+    private Connect4LoopbackTransport(Pipe in, Pipe out) {
+        this.in = in;
+        this.out = out;
+    }
+
+    /**
+     * Create the two connected ends of a loopback connection. What is written to one end is read from the other
+     *
+     * @return - Connect4LoopbackTransport[] the two ends, one for each controller
+     */
+    public static Connect4LoopbackTransport[] pair() {
+        Pipe first = new Pipe();
+        Pipe second = new Pipe();
+        return new Connect4LoopbackTransport[]{new Connect4LoopbackTransport(first, second),
+                new Connect4LoopbackTransport(second, first)};
+    }
+
+    /**
+     * Returns the stream of bytes sent by the other end
+     *
+     * @return - InputStream reading the pipe the other end writes to
+     */
+    @Override
+    public InputStream getInputStream() {
+        return in.input;
+    }
+
+    /**
+     * Returns the stream of bytes sent to the other end
+     *
+     * @return - OutputStream writing the pipe the other end reads from
+     */
+    @Override
+    public OutputStream getOutputStream() {
+        return out.output;
+    }
+
+    /**
+     * Close both directions. Readers on either end read the bytes that were already written and then the end of the
+     * stream, writers on either end fail
+     */
+    @Override
+    public void close() {
+        in.close();
+        out.close();
+    }
+
+    /**
+     * A bounded ring buffer of bytes from one writer to one reader. Reading waits for bytes and writing waits for
+     * room, both on the monitor of the pipe
+     */
+    private static final class Pipe {
+        private final byte[] buffer = new byte[PIPE_BYTES];
+        // position of the next byte to read and the number of bytes that can be read
+        private int head = 0;
+        private int count = 0;
+        private boolean closed = false;
+        final InputStream input = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] single = new byte[1];
+                return Pipe.this.read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] target, int offset, int length) throws IOException {
+                return Pipe.this.read(target, offset, length);
+            }
+
+            @Override
+            public int available() {
+                return Pipe.this.available();
+            }
+        };
+        final OutputStream output = new OutputStream() {
+            @Override
+            public void write(int value) throws IOException {
+                Pipe.this.write(new byte[]{(byte) value}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] source, int offset, int length) throws IOException {
+                Pipe.this.write(source, offset, length);
+            }
+        };
+
+        /**
+         * Read up to length bytes, waiting until at least one byte has been written or the pipe is closed
+         *
+         * @param target array to read into
+         * @param offset position in the array of the first byte read
+         * @param length most bytes to read
+         * @return - int number of bytes read, -1 at the end of the stream
+         * @throws IOException if the reading thread is interrupted
+         */
+        synchronized int read(byte[] target, int offset, int length) throws IOException {
+            if (length == 0)
+                return 0;
+            while (count == 0 && !closed)
+                await();
+            if (count == 0)
+                return -1;
+            int read = Math.min(length, count);
+            int first = Math.min(read, buffer.length - head);
+            System.arraycopy(buffer, head, target, offset, first);
+            System.arraycopy(buffer, 0, target, offset + first, read - first);
+            head = (head + read) % buffer.length;
+            count -= read;
+            notifyAll();
+            return read;
+        }
+
+        /**
+         * Write all bytes, waiting for the reader whenever the buffer is full
+         *
+         * @param source array holding the bytes
+         * @param offset position in the array of the first byte to write
+         * @param length number of bytes to write
+         * @throws IOException if the pipe is closed or the writing thread is interrupted
+         */
+        synchronized void write(byte[] source, int offset, int length) throws IOException {
+            while (length > 0) {
+                while (count == buffer.length && !closed)
+                    await();
+                if (closed)
+                    throw new IOException("Loopback transport is closed");
+                int tail = (head + count) % buffer.length;
+                int written = Math.min(length, Math.min(buffer.length - count, buffer.length - tail));
+                System.arraycopy(source, offset, buffer, tail, written);
+                count += written;
+                offset += written;
+                length -= written;
+                notifyAll();
+            }
+        }
+
+        /**
+         * Returns the number of bytes that can be read without waiting
+         *
+         * @return - int bytes in the buffer
+         */
+        synchronized int available() {
+            return count;
+        }
+
+        /**
+         * Close the pipe and wake up every waiting reader and writer
+         */
+        synchronized void close() {
+            closed = true;
+            notifyAll();
+        }
+
+        /**
+         * Wait on the monitor of the pipe until another thread reads, writes or closes it
+         *
+         * @throws InterruptedIOException if the waiting thread is interrupted
+         */
+        private void await() throws InterruptedIOException {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting on a loopback transport");
+            }
+        }
+    }
+}
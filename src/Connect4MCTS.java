@@ -0,0 +1,389 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Connect4MCTS.java Authors: Jeff Wiederkehr and Chris Herrera
+ *
+ * This class is a Monte Carlo Tree Search computer player. Every playout walks down the tree picking children by
+ * UCT, adds one level to the tree once a node has been visited often enough and then plays random moves to the end of
+ * the game. The result is added to every node on the way back up. The column whose child was visited most is played.
+ *
+ * Playouts run on plain bitboards copied from the model, so they never go through the listeners of the model and
+ * never allocate. Several workers can run playouts at the same time on one shared tree. The tree lives in preallocated
+ * int arrays that are updated with atomic operations, and a worker adds a virtual loss to every node it walks through
+ * so the other workers spread out over the tree instead of all following the same path. With one thread the playouts
+ * use a fixed seed and the chosen move is always the same for the same position.
+ *
+ * The playouts need the whole board in one long, so only boards where Connect4Geometry.fitsLong holds are played, the
+ * standard board and anything up to 64 cells with the sentinel bits.
+ */
+public class Connect4MCTS implements Connect4Engine {
+    public static final int DEFAULT_PLAYOUTS = 200_000;
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+    // a leaf gets its children after this many visits
+    private static final int EXPAND_VISITS = 2;
+    private static final double EXPLORATION = 1.4;
+    private static final int EXPANDING = -1;
+    // first child block of every node, 0 while not expanded and EXPANDING while a worker is adding the block
+    private final AtomicIntegerArray children;
+    private final AtomicIntegerArray visits;
+    // twice the wins plus the draws for the color that moved into the node
+    private final AtomicIntegerArray scores;
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger started = new AtomicInteger();
+    private int playouts = DEFAULT_PLAYOUTS;
+    private int threads = 1;
+    private ForkJoinPool pool;
+    // the board of the current search, every node has one child per column of it
+    private Connect4Geometry geometry;
+    private int columns;
+    private int[] moveOrder;
+    private long rootYellow;
+    private long rootRed;
+    private long rootMask;
+    private int rootColor;
+    private int playoutLimit;
+    private long deadline;
+
+    /**
+     * Construct an engine with the default tree capacity
+     */
+    public Connect4MCTS() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Construct an engine whose tree holds up to the given number of nodes
+     *
+     * @param capacity number of nodes, every node uses 12 bytes
+     * @throws IllegalArgumentException if the capacity is less than one node and its children on the widest board
+     */
+    public Connect4MCTS(int capacity) throws IllegalArgumentException {
+        if (capacity <= Connect4Geometry.MAX_SIZE)
+            throw new IllegalArgumentException("Tree capacity must be more than " + Connect4Geometry.MAX_SIZE);
+        children = new AtomicIntegerArray(capacity);
+        visits = new AtomicIntegerArray(capacity);
+        scores = new AtomicIntegerArray(capacity);
+    }
+
+    /**
+     * This method sets how many playouts are run for every move when no move time is given
+     *
+     * @param playouts number of playouts, at least 1
+     * @throws IllegalArgumentException if the number of playouts is less than 1
+     */
+    public void setPlayouts(int playouts) throws IllegalArgumentException {
+        if (playouts < 1)
+            throw new IllegalArgumentException("Playouts must be at least 1");
+        this.playouts = playouts;
+    }
+
+    /**
+     * This method sets how many threads run playouts on the shared tree
+     *
+     * @param threads number of threads, at least 1
+     * @throws IllegalArgumentException if the number of threads is less than 1
+     */
+    public void setThreads(int threads) throws IllegalArgumentException {
+        if (threads < 1)
+            throw new IllegalArgumentException("Playout threads must be at least 1");
+        if (threads != this.threads && pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Returns the number of playouts run by the last call to bestMove
+     *
+     * @return - int number of playouts
+     */
+    public int getPlayoutCount() {
+        return Math.min(started.get(), playoutLimit);
+    }
+
+    /**
+     * Find the column for the given color to play with the configured number of playouts
+     *
+     * @param model the game to look at, it is only read
+     * @param color the color to move, 1 = yellow and 2 = red
+     * @return - int column to play or -1 if there is no legal move
+     */
+    @Override
+    public int bestMove(Connect4Model model, int color) {
+        return bestMove(model, color, 0);
+    }
+
+    /**
+     * Find the column for the given color to play by running playouts until the time is up. A column that wins right
+     * away is played without any playouts
+     *
+     * @param model    the game to look at, it is only read
+     * @param color    the color to move, 1 = yellow and 2 = red
+     * @param moveTime milliseconds to run playouts for, or 0 to run the configured number of playouts instead
+     * @return - int column to play or -1 if there is no legal move
+     * @throws IllegalArgumentException if the board of the model does not fit in one long
+     */
+    @Override
+    public int bestMove(Connect4Model model, int color, long moveTime) throws IllegalArgumentException {
+        if (!model.getGeometry().fitsLong())
+            throw new IllegalArgumentException("Monte Carlo playouts can't be run on a " + model.getGeometry() +
+                    " board");
+        geometry = model.getGeometry();
+        columns = geometry.getColumns();
+        moveOrder = geometry.getMoveOrder();
+        rootYellow = model.getBoard(Connect4MoveMessage.YELLOW);
+        rootRed = model.getBoard(Connect4MoveMessage.RED);
+        rootMask = model.getMask();
+        rootColor = color;
+        long possible = geometry.possibleCells(rootMask);
+        if (possible == 0)
+            return -1;
+        long winning = geometry.winningCells(model.getBoard(color), rootMask) & possible;
+        for (int column : moveOrder)
+            if ((winning & geometry.columnMask(column)) != 0)
+                return column;
+        playoutLimit = moveTime > 0 ? Integer.MAX_VALUE : playouts;
+        deadline = moveTime > 0 ? System.nanoTime() + moveTime * 1_000_000L : Long.MAX_VALUE;
+        started.set(0);
+        size.set(1);
+        children.set(0, 0);
+        visits.set(0, 0);
+        scores.set(0, 0);
+        runPlayouts();
+        int bestColumn = -1;
+        int bestVisits = -1;
+        int first = children.get(0);
+        for (int column : moveOrder) {
+            if ((possible & geometry.columnMask(column)) == 0)
+                continue;
+            int count = first > 0 ? visits.get(first + column) : 0;
+            if (count > bestVisits) {
+                bestVisits = count;
+                bestColumn = column;
+            }
+        }
+        return bestColumn;
+    }
+
+    /**
+     * Run the playouts on the calling thread, or on the pool with one worker per thread
+     */
+    private void runPlayouts() {
+        if (threads == 1) {
+            new Worker(1).run();
+            return;
+        }
+        if (pool == null)
+            pool = new ForkJoinPool(threads);
+        List<Future<?>> running = new ArrayList<>();
+        for (int i = 0; i < threads; i++)
+            running.add(pool.submit(new Worker(i + 1)));
+        for (Future<?> future : running) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Playouts were interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Playouts failed", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * A single playout thread. The worker keeps its own board and random number generator, only the tree is shared
+     */
+    private final class Worker implements Runnable {
+        private final long[] boards = new long[3];
+        private final int[] path = new int[geometry.getCells() + 1];
+        private long mask;
+        private long random;
+
+        /**
+         * Construct a worker with its own random sequence
+         *
+         * @param seed seed of the random number generator, never 0
+         */
+        Worker(long seed) {
+            random = seed * 0x9E3779B97F4A7C15L;
+        }
+
+        /**
+         * Run playouts until the playout limit is reached or the time is up
+         */
+        @Override
+        public void run() {
+            int count;
+            while ((count = started.getAndIncrement()) < playoutLimit) {
+                if ((count & 63) == 0 && System.nanoTime() > deadline)
+                    return;
+                playout();
+            }
+        }
+
+        /**
+         * Walk down the tree from the root, expand the leaf that is reached, finish the game with random moves and
+         * add the result to every node of the path
+         */
+        private void playout() {
+            boards[Connect4MoveMessage.YELLOW] = rootYellow;
+            boards[Connect4MoveMessage.RED] = rootRed;
+            mask = rootMask;
+            int color = rootColor;
+            int node = 0;
+            int length = 0;
+            path[length++] = 0;
+            visits.incrementAndGet(0);
+            // the color that won, 0 for a draw, or -1 while the game is still going
+            int winner = -1;
+            while (winner == -1) {
+                long possible = geometry.possibleCells(mask);
+                if (possible == 0) {
+                    winner = 0;
+                    break;
+                }
+                int first = children.get(node);
+                if (first <= 0) {
+                    if (first == EXPANDING || visits.get(node) < EXPAND_VISITS || !expand(node))
+                        break;
+                    first = children.get(node);
+                }
+                int column = select(node, first, possible);
+                int child = first + column;
+                // virtual loss, the visit counts before the result is known
+                visits.incrementAndGet(child);
+                path[length++] = child;
+                if (play(column, color, possible))
+                    winner = color;
+                color = 3 - color;
+                node = child;
+            }
+            if (winner == -1)
+                winner = rollout(color);
+            // the color that moved into path[i] is the root color for odd i
+            for (int i = 1; i < length; i++) {
+                int mover = (i & 1) == 1 ? rootColor : 3 - rootColor;
+                if (winner == mover)
+                    scores.addAndGet(path[i], 2);
+                else if (winner == 0)
+                    scores.addAndGet(path[i], 1);
+            }
+        }
+
+        /**
+         * Add the block of child nodes of the given node, one per column. Only one worker adds the block, the others
+         * keep running playouts from the leaf in the meantime
+         *
+         * @param node the leaf to expand
+         * @return true if the block was added, false if another worker is adding it or the tree is full
+         */
+        private boolean expand(int node) {
+            if (!children.compareAndSet(node, 0, EXPANDING))
+                return false;
+            int first = size.getAndAdd(columns);
+            if (first + columns > children.length()) {
+                size.getAndAdd(-columns);
+                children.set(node, 0);
+                return false;
+            }
+            for (int i = first; i < first + columns; i++) {
+                children.set(i, 0);
+                visits.set(i, 0);
+                scores.set(i, 0);
+            }
+            children.set(node, first);
+            return true;
+        }
+
+        /**
+         * Pick the child with the highest UCT value among the legal columns. Unvisited children are picked first,
+         * center columns before outside ones
+         *
+         * @param node     the node to pick from
+         * @param first    index of its first child
+         * @param possible bitboard of the playable cells
+         * @return - int column of the chosen child
+         */
+        private int select(int node, int first, long possible) {
+            double logParent = Math.log(Math.max(1, visits.get(node)));
+            int bestColumn = -1;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int column : moveOrder) {
+                if ((possible & geometry.columnMask(column)) == 0)
+                    continue;
+                int count = visits.get(first + column);
+                if (count == 0)
+                    return column;
+                double value = scores.get(first + column) / (2.0 * count)
+                        + EXPLORATION * Math.sqrt(logParent / count);
+                if (value > bestValue) {
+                    bestValue = value;
+                    bestColumn = column;
+                }
+            }
+            return bestColumn;
+        }
+
+        /**
+         * Play random moves until the game is over. A move that wins right away is always played, which keeps the
+         * playouts from missing obvious wins
+         *
+         * @param color the color to move
+         * @return - int the color that won or 0 for a draw
+         */
+        private int rollout(int color) {
+            while (true) {
+                long possible = geometry.possibleCells(mask);
+                if (possible == 0)
+                    return 0;
+                long winning = geometry.winningCells(boards[color], mask) & possible;
+                if (winning != 0)
+                    return color;
+                long move = randomBit(possible);
+                boards[color] |= move;
+                mask |= move;
+                color = 3 - color;
+            }
+        }
+
+        /**
+         * Drop a circle of the given color in the given column of the worker's board
+         *
+         * @param column   the column to play
+         * @param color    the color of the circle
+         * @param possible bitboard of the playable cells
+         * @return true if the move won the game
+         */
+        private boolean play(int column, int color, long possible) {
+            long move = possible & geometry.columnMask(column);
+            boolean wins = (geometry.winningCells(boards[color], mask) & move) != 0;
+            boards[color] |= move;
+            mask |= move;
+            return wins;
+        }
+
+        /**
+         * Pick one of the set bits of a bitboard at random
+         *
+         * @param bits a bitboard with at least one bit set
+         * @return - long with only the chosen bit set
+         */
+        private long randomBit(long bits) {
+            // xorshift64
+            random ^= random << 13;
+            random ^= random >>> 7;
+            random ^= random << 17;
+            int skip = (int) ((random >>> 32) * Long.bitCount(bits) >>> 32);
+            for (int i = 0; i < skip; i++)
+                bits &= bits - 1;
+            return Long.lowestOneBit(bits);
+        }
+    }
+}
@@ -1,29 +1,157 @@
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Observable;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.Executor;
 
 /**
  * Connect4Model.java Authors: Jeff Wiederkehr and Chris Herrera
  *
  * This class is the model for the Connect 4 game. This class stores the game state and provides public methods to
  * communicate the game state to the controller and model. Also it performs computation to determine certain aspects of
- * the game state like whether the game is over. We uses the Observable class to be able to notify the view whenever we
- * change the state of the game
+ * the game state like whether the game is over. Every change of the game is told to the Connect4Listener objects that
+ * were added, like the view. The listeners are kept in an array that is replaced when one is added or removed, so
+ * telling them costs one loop over it and a model without listeners, like the boards of the search, only checks that
+ * the array is empty
+ *
+ * The size of the board and the length of a winning line come from a Connect4Geometry, the standard 6 by 7 board
+ * with lines of 4 unless another one is given. The board is stored as bitboards in the layout of the geometry: one
+ * long per color on boards of up to 64 bits and as many longs as needed on larger ones, plus a height for every
+ * column. Each column uses rows + 1 bits starting from the bottom, the extra bit on top of every column is always
+ * empty so that lines never wrap from one column into the next. A new circle only checks the lines through itself
+ * for a win, so a move costs the same on every board size.
+ *
+ * Every position also has a 64 bit Zobrist hash, the xor of a fixed random number for every circle by its color and
+ * cell, which is updated with one xor on every move and every move taken back. A second hash of the same position
+ * mirrored left to right is kept the same way, and the smaller of the two is the canonical hash that a position and
+ * its mirror image share. The random numbers come from a fixed seed so the hashes are the same in every run and can be
+ * stored in files.
+ *
+ * Every move placed on the board is pushed on a stack of ints with its column, color and the result before it, so the
+ * moves can be taken back in reverse order with undo. play and undo change the board without telling the listeners
+ * and without creating objects, for search, analysis and replays, while updateCircle, updateCircleAI and undoMove
+ * tell the listeners.
  */
-public class Connect4Model extends Observable {
-    private List<List<Integer>> gameGrid = new ArrayList<>();
+public class Connect4Model {
+    public static final int IN_PROGRESS = 0;
+    public static final int DRAW = 3;
+    private static final Connect4Listener[] NO_LISTENERS = new Connect4Listener[0];
+    private final Random random = new Random();
+    private Connect4Geometry geometry;
+    // copied from the geometry for the moves
+    private int rows;
+    private int columns;
+    private int columnBits;
+    private int bits;
+    private int words;
+    private int[] steps;
+    private long[] zobrist;
+    private long[] mirrorZobrist;
+    // the words of every color, color * words + word so that 1 = yellow and 2 = red, the words of 0 are unused
+    private long[] boards;
+    // the words of every occupied cell
+    private long[] mask;
+    private int[] heights;
+    private int moveCount = 0;
+    // one entry per placed circle, the result before the move << 8 | column << 2 | color
+    private int[] history;
+    // IN_PROGRESS, the color of the winner or DRAW
+    private int gameResult = IN_PROGRESS;
+    private long hash = 0L;
+    private long mirrorHash = 0L;
     private boolean myTurn = false;
-    private static final int ROWS = 6;
-    private static final int COLUMNS = 7;
-    private boolean serverTurn = false;
+    // every move played through updateCircle and updateCircleAI is appended here when set
+    private Connect4Journal journal;
+    // replaced as a whole when a listener is added or removed, so it can be read without a lock
+    private volatile Connect4Listener[] listeners = NO_LISTENERS;
 
     /**
-     * Single constructor for the Connect4Model. The constructor calls build game grid which initializea the game board
-     * with all empty circles represented by 0
+     * Construct a Connect4Model on the standard board. The game board starts with every column empty which represents
+     * all white circles
      */
     public Connect4Model() {
-        buildGameGrid();
+        this(Connect4Geometry.STANDARD);
+    }
+
+    /**
+     * Construct a Connect4Model on a board of the given size
+     *
+     * @param rows    number of rows, 1 to Connect4Geometry.MAX_SIZE
+     * @param columns number of columns, 1 to Connect4Geometry.MAX_SIZE
+     * @param connect number of circles in a line that win
+     * @throws IllegalArgumentException if there is no such board, see Connect4Geometry
+     */
+    public Connect4Model(int rows, int columns, int connect) throws IllegalArgumentException {
+        this(new Connect4Geometry(rows, columns, connect));
+    }
+
+    /**
+     * Construct a Connect4Model on the board of the given geometry
+     *
+     * @param geometry the size of the board and the length of a winning line
+     */
+    public Connect4Model(Connect4Geometry geometry) {
+        setUp(geometry);
+    }
+
+    /**
+     * Allocate the board for a geometry and copy what the moves need from it
+     *
+     * @param geometry the size of the board and the length of a winning line
+     */
+    private void setUp(Connect4Geometry geometry) {
+        this.geometry = geometry;
+        rows = geometry.getRows();
+        columns = geometry.getColumns();
+        columnBits = geometry.columnBits;
+        bits = geometry.bits;
+        words = geometry.words;
+        steps = geometry.getSteps();
+        zobrist = geometry.zobrist;
+        mirrorZobrist = geometry.mirrorZobrist;
+        boards = new long[3 * words];
+        mask = new long[words];
+        heights = new int[columns];
+        history = new int[rows * columns];
+    }
+
+    /**
+     * Change the size of the board or the length of a winning line. The game is reset, which the listeners see like
+     * newGameReset
+     *
+     * @param geometry the size of the new board and the length of a winning line
+     */
+    public void setGeometry(Connect4Geometry geometry) {
+        if (!geometry.equals(this.geometry))
+            setUp(geometry);
+        newGameReset();
+        if (journal != null)
+            journal.setGeometry(geometry);
+    }
+
+    /**
+     * Returns the size of the board and the length of a winning line
+     *
+     * @return - Connect4Geometry of the board
+     */
+    public Connect4Geometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Returns the number of rows
+     *
+     * @return - int height of the board
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns
+     *
+     * @return - int width of the board
+     */
+    public int getColumns() {
+        return columns;
     }
 
     /**
@@ -45,10 +173,25 @@ public class Connect4Model extends Observable {
     }
 
     /**
-     * This method flips the state of the server turn
+     * This method sets the journal every move of this model is appended to. Copies made for the search are never
+     * journaled
+     *
+     * @param journal - Connect4Journal to append to, or null to stop journaling
+     */
+    public void setJournal(Connect4Journal journal) {
+        this.journal = journal;
+        if (journal != null)
+            journal.setGeometry(geometry);
+    }
+
+    /**
+     * This method used to flip which color isGameOver checked for a win. The result of the game is now tracked for both
+     * colors on every move so this no longer has any effect
+     *
+     * @deprecated isGameOver and getGameResult are correct for both players
      */
+    @Deprecated
     public void flipServerTurn() {
-        serverTurn = !serverTurn;
     }
 
     /**
@@ -57,15 +200,15 @@ public class Connect4Model extends Observable {
      *
      * @param column specifies which column the move should be attempted on
      * @param color  specifies the color of the circle to place
-     * @throws IllegalArgumentException to trigger an error message if the column is full
+     * @throws IllegalArgumentException to trigger an error message if the column is full, or if there is no such
+     *                                  column or color
      */
     public void updateCircle(int column, int color) throws IllegalArgumentException {
+        checkMove(column, color);
         int row = findRow(column);
-        if (row == -1)
-            throw new IllegalArgumentException("Column full, pick somewhere else!");
-        gameGrid.get(column).set(row, color);
-        setChanged();
-        notifyObservers(new Connect4MoveMessage(row, column, color));
+        int before = gameResult;
+        placeCircle(column, color);
+        fireMove(row, column, color, before);
     }
 
     /**
@@ -79,154 +222,492 @@ public class Connect4Model extends Observable {
      * @return - int column location of the replacement
      */
     public int updateCircleAI(int color) {
-        int column = new Random().nextInt(gameGrid.size());
+        int column = random.nextInt(columns);
         // -1 if column full
         int row = findRow(column);
         while (row == -1) {
-            row = findRow(column);
             column++;
-            if (column == COLUMNS)
+            if (column == columns)
                 column = 0;
+            row = findRow(column);
         }
-        gameGrid.get(column).set(row, color);
-        setChanged();
-        notifyObservers(new Connect4MoveMessage(row, column, color));
+        int before = gameResult;
+        placeCircle(column, color);
+        fireMove(row, column, color, before);
         return column;
     }
 
     /**
-     * Find a legal move for the Computer to make in the given column if no column is found it returns -1 otherwise it
-     * returns the index of the valid row
+     * Drop a circle of the color to move into the given column without telling the listeners. Yellow moves first and
+     * the colors alternate. The move can be taken back with undo
      *
      * @param column specifies which column the move should be attempted on
-     * @return - int location of the valid row or -1 if column is full
+     * @throws IllegalArgumentException if there is no such column or it is full
      */
-    private int findRow(int column) {
-        int bound = gameGrid.get(column).size();
-        for (int i = bound - 1; i >= 0; i--) {
-            if (gameGrid.get(column).get(i) == 0) {
-                return i;
-            }
-        }
-        return -1;
+    public void play(int column) throws IllegalArgumentException {
+        play(column, (moveCount & 1) == 0 ? Connect4MoveMessage.YELLOW : Connect4MoveMessage.RED);
     }
 
     /**
-     * Builds the 2d grid that holds the game state. The grid is initialized with every index to 0 representing a white
-     * circle
+     * Drop a circle of the given color into the given column without telling the listeners. The move can be taken
+     * back with undo
      *
-     * @throws IllegalArgumentException to trigger an error message if the column is full
+     * @param column specifies which column the move should be attempted on
+     * @param color  specifies the color of the circle to place
+     * @throws IllegalArgumentException if there is no such column or color or the column is full
      */
-    private void buildGameGrid() {
-        for (int i = 0; i < COLUMNS; i++) {
-            List<Integer> curRow = new ArrayList<>();
-            for (int j = 0; j < ROWS; j++)
-                curRow.add(j, 0);
-            gameGrid.add(curRow);
-        }
+    public void play(int column, int color) throws IllegalArgumentException {
+        checkMove(column, color);
+        placeCircle(column, color);
     }
 
     /**
-     * Check if the 4 of the same color circles exist in any direction in the game board. The method calls seperate
-     * methods to check vertical and horizontal wins. Then it creates two groups of columns 1-4 and 4-7 to check the
-     * diaganol directions
+     * Check a move before anything of the board is changed
      *
-     * @return true if game is over, false if not
+     * @param column the column of the move
+     * @param color  the color of the circle
+     * @throws IllegalArgumentException if there is no such column or color or the column is full
      */
-    public boolean isGameOver() {
-        int win = serverTurn ? 1 : 2; // only server can win like this?
-        if (verticalCheck(win))
-            return true;
-        if (horizontalCheck(win))
-            return true;
-        // columns 0-3
-        for (int startCol = 0; startCol <= 3; startCol++) {
-            List<Integer> first = gameGrid.get(startCol);
-            List<Integer> second = gameGrid.get(startCol + 1);
-            List<Integer> third = gameGrid.get(startCol + 2);
-            List<Integer> fourth = gameGrid.get(startCol + 3);
-            if (diagonalCheck(win, first, second, third, fourth))
-                return true;
-        }
-        // columns 3-6
-        for (int startCol = 3; startCol < gameGrid.size(); startCol++) {
-            List<Integer> first = gameGrid.get(startCol);
-            List<Integer> second = gameGrid.get(startCol - 1);
-            List<Integer> third = gameGrid.get(startCol - 2);
-            List<Integer> fourth = gameGrid.get(startCol - 3);
-            if (diagonalCheck(win, first, second, third, fourth))
-                return true;
-        }
-        return false;
+    private void checkMove(int column, int color) throws IllegalArgumentException {
+        if (column < 0 || column >= columns)
+            throw new IllegalArgumentException("There is no column " + column);
+        if (color != Connect4MoveMessage.YELLOW && color != Connect4MoveMessage.RED)
+            throw new IllegalArgumentException("There is no color " + color);
+        if (findRow(column) == -1)
+            throw new IllegalArgumentException("Column full, pick somewhere else!");
+    }
+
+    /**
+     * Take back the last move without telling the listeners. The board, hashes and result are the same as before the
+     * move was played
+     *
+     * @throws IllegalStateException if no move was played since the last reset
+     */
+    public void undo() throws IllegalStateException {
+        if (moveCount == 0)
+            throw new IllegalStateException("There is no move to take back");
+        int entry = history[--moveCount];
+        int column = entry >>> 2 & 0x3F;
+        int color = entry & 3;
+        int index = column * columnBits + --heights[column];
+        long bit = 1L << index;
+        boards[color * words + (index >>> 6)] &= ~bit;
+        mask[index >>> 6] &= ~bit;
+        hash ^= zobrist[color * bits + index];
+        mirrorHash ^= mirrorZobrist[color * bits + index];
+        gameResult = entry >>> 8;
+        if (journal != null)
+            journal.recordUndo();
+    }
+
+    /**
+     * Take back the last move and tell the listeners with a move of color 0 for the cell that is empty again
+     *
+     * @throws IllegalStateException if no move was played since the last reset
+     */
+    public void undoMove() throws IllegalStateException {
+        if (moveCount == 0)
+            throw new IllegalStateException("There is no move to take back");
+        int column = history[moveCount - 1] >>> 2 & 0x3F;
+        undo();
+        fireMove(findRow(column), column, 0, gameResult);
+    }
+
+    /**
+     * Add a listener that is told about every change of the game on the thread that made the change
+     *
+     * @param listener the listener to add
+     */
+    public synchronized void addListener(Connect4Listener listener) {
+        Connect4Listener[] added = Arrays.copyOf(listeners, listeners.length + 1);
+        added[listeners.length] = listener;
+        listeners = added;
+    }
+
+    /**
+     * Add a listener that is told about every change of the game on the given executor, like Platform::runLater for a
+     * view. The changes are handed to the executor in order, so an executor that runs its tasks in order delivers them
+     * in order
+     *
+     * @param listener the listener to add
+     * @param executor runs the calls to the listener
+     */
+    public void addListener(Connect4Listener listener, Executor executor) {
+        addListener(new ExecutorListener(listener, executor));
     }
 
     /**
-     * Check if a line of 4 vertical circles of the same color exist
+     * Remove a listener however it was added. A listener that was added more than once is removed once
      *
-     * @param win specifies the color of the most recent move so we can check if that move created a win state
-     * @return true if a line of 4 circles exist, false if not
+     * @param listener the listener to remove
      */
-    private boolean verticalCheck(int win) {
-        for (List<Integer> integers : gameGrid) {
-            int line = 0;
-            for (Integer integer : integers) {
-                if (integer == win)
-                    line++;
-                else
-                    line = 0;
-                if (line == 4)
-                    return true;
+    public synchronized void removeListener(Connect4Listener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            Connect4Listener added = listeners[i];
+            if (added == listener || added instanceof ExecutorListener
+                    && ((ExecutorListener) added).listener == listener) {
+                Connect4Listener[] removed = new Connect4Listener[listeners.length - 1];
+                System.arraycopy(listeners, 0, removed, 0, i);
+                System.arraycopy(listeners, i + 1, removed, i, removed.length - i);
+                listeners = removed;
+                return;
             }
         }
-        return false;
     }
 
     /**
-     * Check if a line of 4 horizontal circles of the same color exist
+     * Tell every listener about a move and about the end of the game if the move ended it. A move played after the
+     * game already ended does not end it again
      *
-     * @param win specifies the color of the most recent move so we can check if that move created a win state
-     * @return true if a line of 4 circles exist, false if not
+     * @param row    the row of the circle, counted from the top
+     * @param column the column of the circle
+     * @param color  the color of the circle, 0 when it was taken back
+     * @param before the result of the game before the move
      */
-    private boolean horizontalCheck(int win) {
-        for (int startCol = 0; startCol <= 3; startCol++) {
-            List<Integer> first = gameGrid.get(startCol);
-            List<Integer> second = gameGrid.get(startCol + 1);
-            List<Integer> third = gameGrid.get(startCol + 2);
-            List<Integer> fourth = gameGrid.get(startCol + 3);
-            for (int j = 0; j < first.size(); j++)
-                if (first.get(j) == win && second.get(j) == win && third.get(j) == win && fourth.get(j) == win)
-                    return true;
+    private void fireMove(int row, int column, int color, int before) {
+        Connect4Listener[] current = listeners;
+        if (current.length == 0)
+            return;
+        boolean ended = before == IN_PROGRESS && gameResult != IN_PROGRESS;
+        for (Connect4Listener listener : current) {
+            listener.onMove(row, column, color);
+            if (ended)
+                listener.onGameOver(gameResult);
         }
-        return false;
     }
 
     /**
-     * Check if a line of 4 diagonal circles of the same color exist
+     * Returns the number of moves played since the last reset
      *
-     * @param win    specifies the color of the most recent move so we can check if that move created a win state
-     * @param first  is one column to check in combination with the others
-     * @param second is another column to check in combination with the others
-     * @param third  is another column to check in combination with the others
-     * @param fourth is another column to check in combination with the others
-     * @return true if a line of 4 circles exist, false if not
+     * @return - int number of circles on the board
      */
-    private boolean diagonalCheck(int win, List<Integer> first, List<Integer> second, List<Integer> third,
-                                  List<Integer> fourth) {
-        for (int j = 0; j < 3; j++)
-            if (first.get(j) == win && second.get(j + 1) == win && third.get(j + 2) == win && fourth.get(j + 3) == win)
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Returns the color of the last move
+     *
+     * @return - int 1 = yellow, 2 = red, 0 if no move was played since the last reset
+     */
+    public int getLastColor() {
+        return moveCount == 0 ? 0 : history[moveCount - 1] & 3;
+    }
+
+    /**
+     * Find a legal move for the Computer to make in the given column if no column is found it returns -1 otherwise it
+     * returns the index of the valid row. Rows are counted from the top of the board like in the view
+     *
+     * @param column specifies which column the move should be attempted on
+     * @return - int location of the valid row or -1 if column is full
+     */
+    private int findRow(int column) {
+        int height = heights[column];
+        return height == rows ? -1 : rows - 1 - height;
+    }
+
+    /**
+     * Sets the lowest empty bit of the column on the board of the given color and on the mask of occupied cells, pushes
+     * the move on the move stack and appends it to the journal if there is one. The caller has to make sure the column
+     * is not full. The result of the game is updated from the lines through the new circle only, the first winner is
+     * kept even if circles are placed after the game is over
+     *
+     * @param column specifies which column the circle is dropped in
+     * @param color  specifies the color of the circle to place
+     */
+    private void placeCircle(int column, int color) {
+        int index = column * columnBits + heights[column]++;
+        long bit = 1L << index;
+        boards[color * words + (index >>> 6)] |= bit;
+        mask[index >>> 6] |= bit;
+        hash ^= zobrist[color * bits + index];
+        mirrorHash ^= mirrorZobrist[color * bits + index];
+        history[moveCount++] = gameResult << 8 | column << 2 | color;
+        if (journal != null)
+            journal.recordMove(column, color);
+        if (gameResult != IN_PROGRESS)
+            return;
+        if (completesLine(color, index))
+            gameResult = color;
+        else if (moveCount == rows * columns)
+            gameResult = DRAW;
+    }
+
+    /**
+     * Drop a circle for the search without telling the listeners or updating the result of the game. Every call has
+     * to be undone with unmakeMove in reverse order before the model is used by the game again
+     *
+     * @param column specifies which column the circle is dropped in, must not be full
+     * @param color  specifies the color of the circle to place
+     */
+    void makeMove(int column, int color) {
+        int index = column * columnBits + heights[column]++;
+        long bit = 1L << index;
+        boards[color * words + (index >>> 6)] ^= bit;
+        mask[index >>> 6] ^= bit;
+        hash ^= zobrist[color * bits + index];
+        mirrorHash ^= mirrorZobrist[color * bits + index];
+    }
+
+    /**
+     * Take back the top circle of a column that was placed by makeMove
+     *
+     * @param column specifies which column the circle is removed from
+     * @param color  specifies the color of the circle that was placed
+     */
+    void unmakeMove(int column, int color) {
+        int index = column * columnBits + --heights[column];
+        long bit = 1L << index;
+        boards[color * words + (index >>> 6)] ^= bit;
+        mask[index >>> 6] ^= bit;
+        hash ^= zobrist[color * bits + index];
+        mirrorHash ^= mirrorZobrist[color * bits + index];
+    }
+
+    /**
+     * Check if a circle of the given color dropped into the given column would complete a line, without dropping it.
+     * The search uses this on boards that don't fit in one long
+     *
+     * @param column specifies the column, must not be full
+     * @param color  specifies the color of the circle
+     * @return true if the circle would win the game
+     */
+    boolean isWinningMove(int column, int color) {
+        return completesLine(color, column * columnBits + heights[column]);
+    }
+
+    /**
+     * Count the empty cells where a circle of the given color would complete a line, looking only at the lowest two
+     * empty cells of every column. The search scores positions on boards that don't fit in one long by this, which
+     * keeps the cost of a score to a few cells per column however large the board is
+     *
+     * @param color specifies the color
+     * @return - int number of cells that win for the color
+     */
+    int countThreats(int color) {
+        int count = 0;
+        for (int column = 0; column < columns; column++)
+            for (int height = heights[column]; height < rows && height < heights[column] + 2; height++)
+                if (completesLine(color, column * columnBits + height))
+                    count++;
+        return count;
+    }
+
+    /**
+     * Copy the board into a new model without any listeners. The search uses this to give every thread its own board
+     *
+     * @return - Connect4Model with the same circles and result as this one
+     */
+    Connect4Model copyBoard() {
+        Connect4Model copy = new Connect4Model(geometry);
+        System.arraycopy(boards, 0, copy.boards, 0, boards.length);
+        System.arraycopy(heights, 0, copy.heights, 0, heights.length);
+        System.arraycopy(mask, 0, copy.mask, 0, mask.length);
+        copy.moveCount = moveCount;
+        System.arraycopy(history, 0, copy.history, 0, moveCount);
+        copy.gameResult = gameResult;
+        copy.hash = hash;
+        copy.mirrorHash = mirrorHash;
+        return copy;
+    }
+
+    /**
+     * Check if a circle can still be dropped in the given column
+     *
+     * @param column specifies which column to check
+     * @return true if the column is not full, false if it is
+     */
+    boolean canPlay(int column) {
+        return heights[column] < rows;
+    }
+
+    /**
+     * Returns the bitboard of the given color on a board that fits in one long, see Connect4Geometry.fitsLong
+     *
+     * @param color 1 = yellow, 2 = red
+     * @return - long with one bit set for every circle of that color
+     */
+    long getBoard(int color) {
+        return boards[color * words];
+    }
+
+    /**
+     * Returns the bitboard of every occupied cell on a board that fits in one long, see Connect4Geometry.fitsLong
+     *
+     * @return - long with one bit set for every circle on the board
+     */
+    long getMask() {
+        return mask[0];
+    }
+
+    /**
+     * Returns the color of the circle in a cell. Rows are counted from the top of the board like in the view
+     *
+     * @param row    specifies the row
+     * @param column specifies the column
+     * @return - int 1 = yellow, 2 = red, 0 if the cell is empty
+     * @throws IllegalArgumentException if there is no such cell
+     */
+    public int getCircle(int row, int column) throws IllegalArgumentException {
+        if (row < 0 || row >= rows || column < 0 || column >= columns)
+            throw new IllegalArgumentException("There is no cell at row " + row + " column " + column);
+        int index = column * columnBits + rows - 1 - row;
+        for (int color = 1; color < 3; color++)
+            if ((boards[color * words + (index >>> 6)] & 1L << index) != 0)
+                return color;
+        return 0;
+    }
+
+    /**
+     * Returns the Zobrist hash of the position. Positions reached by different move orders have the same hash
+     *
+     * @return - long hash of the circles on the board, 0 for the empty board
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Returns the hash shared by the position and its mirror image, for caches and books that store a position and
+     * its mirror once
+     *
+     * @return - long the smaller of the hash of the position and the hash of its mirror image
+     */
+    public long getCanonicalHash() {
+        return Math.min(hash, mirrorHash);
+    }
+
+    /**
+     * Returns whether the canonical hash is the hash of the mirror image. A move stored for the canonical position is
+     * then played in column getColumns() - 1 - column of this one
+     *
+     * @return - boolean true if the canonical hash belongs to the mirror image, false if it belongs to this position
+     */
+    public boolean isMirrored() {
+        return mirrorHash < hash;
+    }
+
+    /**
+     * Check if the game is over. The result is cached when every circle is placed so this does not look at the board
+     *
+     * @return true if someone has won the game or the board is full, false if the game should continue
+     */
+    public boolean isGameOver() {
+        return gameResult != IN_PROGRESS;
+    }
+
+    /**
+     * Returns the result of the game
+     *
+     * @return - int IN_PROGRESS, the color of the winner (1 = yellow, 2 = red) or DRAW
+     */
+    public int getGameResult() {
+        return gameResult;
+    }
+
+    /**
+     * Check if the circle at the given bit index is part of a winning line of the given color. Only the lines through
+     * that circle are walked in both directions, in the directions of the geometry: stepping by 1 follows the column,
+     * by columnBits the row and by columnBits - 1 and columnBits + 1 the two diagonals. The empty sentinel bit on top
+     * of every column stops a line from wrapping into the next column. The cell at the index itself is not looked at,
+     * so this also tells whether an empty cell would win
+     *
+     * @param color specifies the color
+     * @param index bit index of the circle that was just placed
+     * @return true if a winning line goes through the circle, false if not
+     */
+    private boolean completesLine(int color, int index) {
+        int needed = geometry.getConnect() - 1;
+        for (int step : steps)
+            if (countInDirection(color, index, step) >= needed)
                 return true;
         return false;
     }
-    
-    
+
+    /**
+     * Count the circles next to the given bit index along one line, in both directions of the given step and without
+     * counting the circle at the index itself
+     *
+     * @param color specifies the color
+     * @param index bit index of the circle that was just placed
+     * @param step  distance in bits between two neighbours on the line
+     * @return - int number of neighbouring circles of the same color on the line
+     */
+    private int countInDirection(int color, int index, int step) {
+        int offset = color * words;
+        int count = 0;
+        for (int i = index + step; i < bits && (boards[offset + (i >>> 6)] & (1L << i)) != 0; i += step)
+            count++;
+        for (int i = index - step; i >= 0 && (boards[offset + (i >>> 6)] & (1L << i)) != 0; i -= step)
+            count++;
+        return count;
+    }
+
     /**
-     * Reset to a fresh instance of the game. This resets the grid on the backend (model) and the frontend (view).
+     * Reset to a fresh instance of the game. This resets the grid on the backend (model) and the frontend (view). The
+     * bitboards are cleared in place so a reset does not allocate
      *
      */
     public void newGameReset() {
-    	gameGrid = new ArrayList<>();
-    	buildGameGrid();
-    	setChanged();
-    	notifyObservers("reset");
+    	Arrays.fill(boards, 0L);
+    	Arrays.fill(heights, 0);
+    	Arrays.fill(mask, 0L);
+    	hash = 0L;
+    	mirrorHash = 0L;
+    	moveCount = 0;
+    	gameResult = IN_PROGRESS;
+    	if (journal != null)
+    	    journal.endGame();
+    	for (Connect4Listener listener : listeners)
+    	    listener.onReset();
+    }
+
+    /**
+     * A listener whose calls are run on an executor
+     */
+    private static final class ExecutorListener implements Connect4Listener {
+        final Connect4Listener listener;
+        private final Executor executor;
+
+        /**
+         * Construct an ExecutorListener
+         *
+         * @param listener the listener to call
+         * @param executor runs the calls
+         */
+        ExecutorListener(Connect4Listener listener, Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+        }
+
+        /**
+         * Hand the move to the executor
+         *
+         * @param row    the row of the circle, counted from the top
+         * @param column the column of the circle
+         * @param color  the color of the circle, 0 when it was taken back
+         */
+        @Override
+        public void onMove(int row, int column, int color) {
+            executor.execute(() -> listener.onMove(row, column, color));
+        }
+
+        /**
+         * Hand the reset to the executor
+         */
+        @Override
+        public void onReset() {
+            executor.execute(listener::onReset);
+        }
+
+        /**
+         * Hand the end of the game to the executor
+         *
+         * @param result the color of the winner or DRAW
+         */
+        @Override
+        public void onGameOver(int result) {
+            executor.execute(() -> listener.onGameOver(result));
+        }
     }
 }
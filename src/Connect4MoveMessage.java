@@ -3,8 +3,10 @@ import java.io.Serializable;
 /**
  * Connect4MoveMessage.java Authors: Jeff Wiederkehr and Chris Herrera
  *
- * This class is the message that is used to communicate from the model to the view in notify observers and to
- * communicate from the client to the server to notify the other of changes in state.
+ * This class holds one move with the row, column and color of its circle. The controller queues the moves it sends to
+ * the other player as messages, and the colors of the circles are its YELLOW and RED. Moves between the client and the
+ * server are sent with the binary Connect4Protocol instead of serializing this message, and the model tells its
+ * listeners about moves with plain ints.
  */
 public class Connect4MoveMessage implements Serializable {
     public static int YELLOW = 1;
@@ -0,0 +1,125 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Connect4OpeningBook.java Authors: Jeff Wiederkehr and Chris Herrera
+ *
+ * This class reads an opening book written by Connect4BookGenerator. The file is memory mapped read only, so lookups
+ * read straight from the mapped pages without copying the book onto the heap, and every process on the same machine
+ * shares one copy of it through the page cache.
+ *
+ * The file starts with a 16 byte header holding the magic number, the version, the number of positions and the ply
+ * the book was generated to. The header is followed by one sorted long per position, the canonical Zobrist hash of
+ * the position from Connect4Model with the column to play in its lowest 4 bits. A position and its mirror image share
+ * one entry, which halves the book, and the column is mirrored back for positions whose mirror image is canonical.
+ * Positions are found by binary search over the entries.
+ */
+public class Connect4OpeningBook {
+    public static final String DEFAULT_FILE = "connect4.book";
+    static final int MAGIC = 0x43344F42;
+    static final int VERSION = 2;
+    // the lowest bits of an entry hold the column, the rest the hash
+    static final long MOVE_BITS = 0xF;
+    static final int HEADER_BYTES = 16;
+    private final MappedByteBuffer buffer;
+    private final int count;
+    private final int ply;
+
+    /**
+     * Map the opening book in the given file
+     *
+     * @param file the book written by Connect4BookGenerator
+     * @throws IOException if the file can't be read or is not an opening book
+     */
+    public Connect4OpeningBook(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES)
+                throw new IOException("Not an opening book: " + file);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+            throw new IOException("Not an opening book: " + file);
+        count = buffer.getInt(8);
+        ply = buffer.getInt(12);
+        if (buffer.capacity() != HEADER_BYTES + (long) count * Long.BYTES)
+            throw new IOException("Opening book is truncated: " + file);
+    }
+
+    /**
+     * Map the opening book in the given file if it exists. A missing or broken book is reported and ignored so the
+     * game can still be played without it
+     *
+     * @param file the book written by Connect4BookGenerator
+     * @return - Connect4OpeningBook or null if there is no usable book
+     */
+    public static Connect4OpeningBook openIfPresent(Path file) {
+        if (!Files.isRegularFile(file))
+            return null;
+        try {
+            return new Connect4OpeningBook(file);
+        } catch (IOException e) {
+            System.err.println("Something went wrong with the opening book! " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Look up the move for the given color in the current position of the model
+     *
+     * @param model the game to look up
+     * @param color the color to move, 1 = yellow and 2 = red. Yellow always moves first in the book, so the color
+     *              follows from the number of circles and only the position is looked up
+     * @return - int column to play or -1 if the position is not in the book or the model is not on the standard board
+     */
+    public int lookup(Connect4Model model, int color) {
+        if (!model.getGeometry().equals(Connect4Geometry.STANDARD))
+            return -1;
+        int column = lookup(model.getCanonicalHash());
+        return column < 0 || !model.isMirrored() ? column : model.getColumns() - 1 - column;
+    }
+
+    /**
+     * Look up the move for a canonical hash
+     *
+     * @param hash canonical hash from Connect4Model.getCanonicalHash
+     * @return - int column to play in the canonical position or -1 if the position is not in the book
+     */
+    public int lookup(long hash) {
+        long key = hash & ~MOVE_BITS;
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long found = buffer.getLong(HEADER_BYTES + middle * Long.BYTES);
+            if ((found & ~MOVE_BITS) < key)
+                low = middle + 1;
+            else if ((found & ~MOVE_BITS) > key)
+                high = middle - 1;
+            else
+                return (int) (found & MOVE_BITS);
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of positions in the book
+     *
+     * @return - int number of positions
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns how many moves deep the book goes
+     *
+     * @return - int the book holds every position with fewer moves than this
+     */
+    public int getPly() {
+        return ply;
+    }
+}
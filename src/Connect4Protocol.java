@@ -0,0 +1,373 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Connect4Protocol.java Authors: Jeff Wiederkehr and Chris Herrera
+ *
+ * This class is the binary wire protocol between two Connect4Controllers. Each side starts the connection with a
+ * 3 byte header, the letters "C4" and the protocol version. After the header every message is one type byte followed
+ * by its payload:
+ *
+ * MOVE   - 1 byte with the column in the upper 6 bits and the color in the lower 2 bits
+ * RESET  - no payload
+ * RESIGN - 1 byte with the color that resigns
+ * PING   - no payload
+ * START  - 1 byte with the color the receiver plays and 3 bytes with the rows, columns and line length of the board,
+ *          sent by Connect4Server when it pairs two players
+ * JOIN   - 1 byte with the Connect4Lobby queue the sender wants to be paired from and 3 bytes with the board the sender
+ *          plays on, sent by a client
+ * UNDO   - 1 byte with the color of the last move, which is to be taken back
+ *
+ * A player asks to take back its own last move with an UNDO of its color while the opponent is to move. The opponent
+ * agrees by taking the move back and sending the same UNDO back, and the move only counts as taken back on both sides
+ * once that answer arrives. An opponent that already answered with a move ignores the request.
+ *
+ * A move is 2 bytes on the wire, where Java serialization of a Connect4MoveMessage needs 18 bytes plus 72 bytes of
+ * stream header and class descriptor on the first message, and reading it back never creates objects from the bytes
+ * of the other side. The frames can be written to a stream with an instance of this class or put into a ByteBuffer
+ * with the static methods.
+ *
+ * The version is raised whenever a message type is added or changed, so two sides that would not understand each
+ * other's messages refuse the connection at the header instead of failing in the middle of a game:
+ *
+ * 1 - MOVE, RESET, RESIGN and PING
+ * 2 - START from a server that pairs players
+ * 3 - JOIN with the lobby queue
+ * 4 - UNDO
+ * 5 - the board in START and JOIN
+ */
+public class Connect4Protocol {
+    public static final int VERSION = 5;
+    public static final int MOVE = 1;
+    public static final int RESET = 2;
+    public static final int RESIGN = 3;
+    public static final int PING = 4;
+    public static final int START = 5;
+    public static final int JOIN = 6;
+    public static final int UNDO = 7;
+    static final int HEADER_BYTES = 3;
+    static final int MAX_FRAME_BYTES = 5;
+    private static final int MAGIC = ('C' << 8) | '4';
+    private final DataInputStream in;
+    private final OutputStream out;
+    // frames are put here and written with a single call so a move is never split over two packets
+    private final ByteBuffer frame = ByteBuffer.allocate(Math.max(HEADER_BYTES, MAX_FRAME_BYTES));
+    private boolean headerRead = false;
+    private int column;
+    private int color;
+    private Connect4Geometry geometry;
+
+    /**
+     * Construct a Connect4Protocol on the streams of a connection and send the header to the other side. The header
+     * of the other side is read with the first message
+     *
+     * @param in  the stream the other side writes to
+     * @param out the stream the other side reads from
+     * @throws IOException if the header can't be sent
+     */
+    public Connect4Protocol(InputStream in, OutputStream out) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in, 256));
+        this.out = out;
+        putHeader(frame);
+        send();
+    }
+
+    /**
+     * Send a move
+     *
+     * @param column the column the circle was dropped in
+     * @param color  the color of the circle
+     * @throws IOException if the move can't be sent
+     */
+    public synchronized void writeMove(int column, int color) throws IOException {
+        putMove(frame, column, color);
+        send();
+    }
+
+    /**
+     * Tell the other side a new game has started
+     *
+     * @throws IOException if the message can't be sent
+     */
+    public synchronized void writeReset() throws IOException {
+        putMessage(frame, RESET, 0);
+        send();
+    }
+
+    /**
+     * Tell the other side the given color gives up the game
+     *
+     * @param color the color that resigns
+     * @throws IOException if the message can't be sent
+     */
+    public synchronized void writeResign(int color) throws IOException {
+        putMessage(frame, RESIGN, color);
+        send();
+    }
+
+    /**
+     * Tell a player which color it plays in a new game and on which board. Only a server that pairs players sends this
+     *
+     * @param color    the color the other side plays
+     * @param geometry the board of the game
+     * @throws IOException if the message can't be sent
+     */
+    public synchronized void writeStart(int color, Connect4Geometry geometry) throws IOException {
+        putMessage(frame, START, color, geometry);
+        send();
+    }
+
+    /**
+     * Ask a server that pairs players for an opponent from the given lobby queue that plays on the given board
+     *
+     * @param queue    the Connect4Lobby queue, 0 to 255
+     * @param geometry the board the sender plays on
+     * @throws IOException if the message can't be sent
+     */
+    public synchronized void writeJoin(int queue, Connect4Geometry geometry) throws IOException {
+        putMessage(frame, JOIN, queue, geometry);
+        send();
+    }
+
+    /**
+     * Ask the other side to take back the last move, or agree to the other side taking back its last move
+     *
+     * @param color the color of the move to take back
+     * @throws IOException if the message can't be sent
+     */
+    public synchronized void writeUndo(int color) throws IOException {
+        putMessage(frame, UNDO, color);
+        send();
+    }
+
+    /**
+     * Send a message without meaning to check that the connection is alive
+     *
+     * @throws IOException if the message can't be sent
+     */
+    public synchronized void writePing() throws IOException {
+        putMessage(frame, PING, 0);
+        send();
+    }
+
+    /**
+     * Wait for the header of the other side. This happens with the first read, calling it first is only needed to
+     * know that the other side speaks the protocol before it sends a message
+     *
+     * @throws IOException if the connection is closed or the other side does not speak this protocol
+     */
+    public void readHeader() throws IOException {
+        if (headerRead)
+            return;
+        if (in.readUnsignedShort() != MAGIC)
+            throw new IOException("The other side does not speak the Connect 4 protocol");
+        int version = in.readUnsignedByte();
+        if (version != VERSION)
+            throw new IOException("Unsupported Connect 4 protocol version " + version);
+        headerRead = true;
+    }
+
+    /**
+     * Read the next message from the other side. The column and color of a move and the color of a resignation, start
+     * or undo are available from getColumn and getColor until the next message is read, the queue of a join from
+     * getColor and the board of a start or join from getGeometry
+     *
+     * @return - int MOVE, RESET, RESIGN, PING, START, JOIN or UNDO
+     * @throws IOException if the connection is closed or the other side does not speak this protocol
+     */
+    public int read() throws IOException {
+        readHeader();
+        int type = in.readUnsignedByte();
+        switch (type) {
+            case MOVE:
+                int move = in.readUnsignedByte();
+                column = move >>> 2;
+                color = checkColor(move & 3);
+                break;
+            case START:
+            case JOIN:
+                column = -1;
+                color = type == START ? checkColor(in.readUnsignedByte()) : in.readUnsignedByte();
+                geometry = toGeometry(in.readUnsignedByte(), in.readUnsignedByte(), in.readUnsignedByte());
+                if (geometry == null)
+                    throw new IOException("The other side plays on a board this game does not have");
+                break;
+            case RESIGN:
+            case UNDO:
+                column = -1;
+                color = checkColor(in.readUnsignedByte());
+                break;
+            case RESET:
+            case PING:
+                column = -1;
+                color = 0;
+                break;
+            default:
+                throw new IOException("Unknown Connect 4 message type " + type);
+        }
+        return type;
+    }
+
+    /**
+     * Check the color of a message from the other side
+     *
+     * @param color the color that was read
+     * @return - int the color if it is yellow or red
+     * @throws IOException if the color is not a player, the message is malformed
+     */
+    private static int checkColor(int color) throws IOException {
+        if (color != Connect4MoveMessage.YELLOW && color != Connect4MoveMessage.RED)
+            throw new IOException("Malformed Connect 4 message with color " + color);
+        return color;
+    }
+
+    /**
+     * Returns the column of the last move read
+     *
+     * @return - int column of the move, -1 if the last message was not a move
+     */
+    public int getColumn() {
+        return column;
+    }
+
+    /**
+     * Returns the color of the last move, resignation, start or undo read, or the queue of the last join
+     *
+     * @return - int color 1 = yellow, 2 = red, the queue of a join, 0 if the last message has no color
+     */
+    public int getColor() {
+        return color;
+    }
+
+    /**
+     * Returns the board of the last start or join read
+     *
+     * @return - Connect4Geometry of the board the other side plays on, null if no start or join has been read
+     */
+    public Connect4Geometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Put the connection header into a buffer
+     *
+     * @param buffer buffer with at least HEADER_BYTES remaining
+     */
+    static void putHeader(ByteBuffer buffer) {
+        buffer.putShort((short) MAGIC).put((byte) VERSION);
+    }
+
+    /**
+     * Take a connection header from a buffer
+     *
+     * @param buffer buffer with at least HEADER_BYTES remaining
+     * @return - boolean true if the header is this protocol and version
+     */
+    static boolean getHeader(ByteBuffer buffer) {
+        return (buffer.getShort() & 0xFFFF) == MAGIC && (buffer.get() & 0xFF) == VERSION;
+    }
+
+    /**
+     * Put a move into a buffer
+     *
+     * @param buffer buffer with at least MAX_FRAME_BYTES remaining
+     * @param column the column of the move, 0 to 63
+     * @param color  the color of the circle, 1 or 2
+     * @throws IllegalArgumentException if the column or color does not fit the message
+     */
+    static void putMove(ByteBuffer buffer, int column, int color) throws IllegalArgumentException {
+        if (column < 0 || column > 63 || color < 0 || color > 3)
+            throw new IllegalArgumentException("Move does not fit the protocol: column " + column + " color " + color);
+        buffer.put((byte) MOVE).put((byte) (column << 2 | color));
+    }
+
+    /**
+     * Put a message without a column or board into a buffer
+     *
+     * @param buffer buffer with at least MAX_FRAME_BYTES remaining
+     * @param type   RESET, RESIGN, PING or UNDO
+     * @param color  the color that resigns or is taken back, ignored for the other types
+     */
+    static void putMessage(ByteBuffer buffer, int type, int color) {
+        buffer.put((byte) type);
+        if (frameLength(type) > 1)
+            buffer.put((byte) color);
+    }
+
+    /**
+     * Put a message with a board into a buffer
+     *
+     * @param buffer   buffer with at least MAX_FRAME_BYTES remaining
+     * @param type     START or JOIN
+     * @param color    the color that starts or the queue to join
+     * @param geometry the board of the game
+     */
+    static void putMessage(ByteBuffer buffer, int type, int color, Connect4Geometry geometry) {
+        buffer.put((byte) type).put((byte) color).put((byte) geometry.getRows()).put((byte) geometry.getColumns())
+                .put((byte) geometry.getConnect());
+    }
+
+    /**
+     * Take the board of a START or JOIN from a buffer, after its type and color byte
+     *
+     * @param buffer buffer with at least 3 bytes remaining
+     * @return - Connect4Geometry of the board, null if there is no such board
+     */
+    static Connect4Geometry getGeometry(ByteBuffer buffer) {
+        return toGeometry(buffer.get() & 0xFF, buffer.get() & 0xFF, buffer.get() & 0xFF);
+    }
+
+    /**
+     * Returns the board with the given size and line length as sent by the other side
+     *
+     * @param rows    number of rows
+     * @param columns number of columns
+     * @param connect number of circles in a winning line
+     * @return - Connect4Geometry of the board, null if there is no such board
+     */
+    private static Connect4Geometry toGeometry(int rows, int columns, int connect) {
+        try {
+            return new Connect4Geometry(rows, columns, connect);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the length of a message of the given type including the type byte
+     *
+     * @param type the type byte of the message
+     * @return - int number of bytes of the message, -1 if the type is unknown
+     */
+    static int frameLength(int type) {
+        switch (type) {
+            case MOVE:
+            case RESIGN:
+            case UNDO:
+                return 2;
+            case START:
+            case JOIN:
+                return 5;
+            case RESET:
+            case PING:
+                return 1;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Write the bytes put into the frame buffer to the other side
+     *
+     * @throws IOException if the bytes can't be written
+     */
+    private void send() throws IOException {
+        out.write(frame.array(), 0, frame.position());
+        out.flush();
+        frame.clear();
+    }
+}
@@ -0,0 +1,270 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Connect4Replay.java Authors: Jeff Wiederkehr and Chris Herrera
+ *
+ * This class reads the games in a journal written by Connect4Journal. The journal is memory mapped read only and
+ * indexed by one pass over its bytes that remembers where every game starts, so any game can be replayed onto a
+ * Connect4Model without reading the ones before it. Only the records up to the end in the header are read, so a
+ * journal can be replayed while a game is still appending to it.
+ *
+ * From the command line it prints one game with its moves and final board, or without a game number replays every
+ * game and prints the results and how fast they were scanned.
+ *
+ * Usage: java Connect4Replay [journal] [game]
+ */
+public class Connect4Replay {
+    private final MappedByteBuffer buffer;
+    private final int end;
+    // offset of the GAME byte of every game, and of the end of the journal after the last game
+    private final int[] starts;
+    private final int games;
+
+    /**
+     * Map and index the journal in the given file
+     *
+     * @param file the journal written by Connect4Journal
+     * @throws IOException if the file can't be read or is not a journal
+     */
+    public Connect4Replay(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < Connect4Journal.HEADER_BYTES)
+                throw new IOException("Not a journal: " + file);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    Math.min(channel.size(), Connect4Journal.MAX_BYTES));
+        }
+        if (buffer.getInt(0) != Connect4Journal.MAGIC || buffer.getInt(4) != Connect4Journal.VERSION)
+            throw new IOException("Not a journal: " + file);
+        long last = buffer.getLong(8);
+        if (last < Connect4Journal.HEADER_BYTES || last > buffer.capacity())
+            throw new IOException("Journal is truncated: " + file);
+        end = (int) last;
+        int[] found = new int[1024];
+        int count = 0;
+        for (int i = Connect4Journal.HEADER_BYTES; i < end; i++) {
+            if ((buffer.get(i) & 0xFF) != Connect4Journal.GAME)
+                continue;
+            if (count + 1 == found.length)
+                found = Arrays.copyOf(found, found.length * 2);
+            found[count++] = i;
+            i += Connect4Journal.GAME_BYTES - 1;
+        }
+        found[count] = end;
+        starts = found;
+        games = count;
+    }
+
+    /**
+     * Print one game of a journal or replay all of them from the command line
+     *
+     * @param args the journal file, Connect4Journal.DEFAULT_FILE if missing, and the number of the game to print
+     */
+    public static void main(String[] args) {
+        Path file = Paths.get(args.length > 0 ? args[0] : Connect4Journal.DEFAULT_FILE);
+        try {
+            Connect4Replay replay = new Connect4Replay(file);
+            if (args.length > 1)
+                replay.printGame(Integer.parseInt(args[1]));
+            else
+                replay.printSummary();
+        } catch (IOException e) {
+            System.err.println("Something went wrong with the journal! " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the number of games in the journal
+     *
+     * @return - int number of games
+     */
+    public int getGameCount() {
+        return games;
+    }
+
+    /**
+     * Returns when a game started
+     *
+     * @param game the number of the game, from 0
+     * @return - long milliseconds since the epoch
+     * @throws IllegalArgumentException if there is no such game
+     */
+    public long getStartMillis(int game) throws IllegalArgumentException {
+        return buffer.getLong(start(game) + 1);
+    }
+
+    /**
+     * Returns the board a game was played on
+     *
+     * @param game the number of the game, from 0
+     * @return - Connect4Geometry of the board
+     * @throws IllegalArgumentException if there is no such game
+     * @throws IOException              if the board stored for the game does not exist, which means the journal is
+     *                                  damaged
+     */
+    public Connect4Geometry getGeometry(int game) throws IllegalArgumentException, IOException {
+        int offset = start(game) + 1 + Long.BYTES;
+        int rows = buffer.get(offset) & 0xFF;
+        int columns = buffer.get(offset + 1) & 0xFF;
+        int connect = buffer.get(offset + 2) & 0xFF;
+        if (rows == Connect4Geometry.STANDARD.getRows() && columns == Connect4Geometry.STANDARD.getColumns()
+                && connect == Connect4Geometry.STANDARD.getConnect())
+            return Connect4Geometry.STANDARD;
+        try {
+            return new Connect4Geometry(rows, columns, connect);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Game " + game + " has an unknown board: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the number of moves of a game that were not taken back
+     *
+     * @param game the number of the game, from 0
+     * @return - int number of circles on the board at the end of the game
+     * @throws IllegalArgumentException if there is no such game
+     */
+    public int getMoveCount(int game) throws IllegalArgumentException {
+        return getMoves(game, null);
+    }
+
+    /**
+     * Copy the moves of a game that were not taken back
+     *
+     * @param game  the number of the game, from 0
+     * @param moves array receiving every move as column << 2 | color, long enough for getMoveCount moves, or null to
+     *              only count them
+     * @return - int number of moves copied
+     * @throws IllegalArgumentException if there is no such game
+     */
+    public int getMoves(int game, int[] moves) throws IllegalArgumentException {
+        int count = 0;
+        for (int i = start(game) + Connect4Journal.GAME_BYTES; i < starts[game + 1]; i++) {
+            int move = buffer.get(i) & 0xFF;
+            if (move == Connect4Journal.UNDO)
+                count = Math.max(0, count - 1);
+            else if (moves != null && count < moves.length)
+                moves[count++] = move;
+            else
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * Replay a game onto a model. The model is reset first, on the board of the game if it was played on another one,
+     * and ends up in the position after the last move, with the moves that were taken back undone. The listeners of
+     * the model only see the reset
+     *
+     * @param game  the number of the game, from 0
+     * @param model the model to play the moves on
+     * @throws IllegalArgumentException if there is no such game
+     * @throws IOException              if a move of the game can't be played, which means the journal is damaged
+     */
+    public void replay(int game, Connect4Model model) throws IllegalArgumentException, IOException {
+        Connect4Geometry geometry = getGeometry(game);
+        if (geometry.equals(model.getGeometry()))
+            model.newGameReset();
+        else
+            model.setGeometry(geometry);
+        for (int i = start(game) + Connect4Journal.GAME_BYTES; i < starts[game + 1]; i++) {
+            int move = buffer.get(i) & 0xFF;
+            try {
+                if (move == Connect4Journal.UNDO)
+                    model.undo();
+                else
+                    model.play(move >>> 2, move & 3);
+            } catch (RuntimeException e) {
+                throw new IOException("Game " + game + " has an illegal move at offset " + i);
+            }
+        }
+    }
+
+    /**
+     * Print the start time, moves, result and final board of a game
+     *
+     * @param game the number of the game, from 0
+     * @throws IOException if the game can't be replayed
+     */
+    private void printGame(int game) throws IOException {
+        Connect4Model model = new Connect4Model(getGeometry(game));
+        replay(game, model);
+        StringBuilder moves = new StringBuilder();
+        for (int i = start(game) + Connect4Journal.GAME_BYTES; i < starts[game + 1]; i++) {
+            int move = buffer.get(i) & 0xFF;
+            if (move == Connect4Journal.UNDO)
+                moves.append(" undo");
+            else
+                moves.append((move & 3) == Connect4MoveMessage.YELLOW ? " Y" : " R").append(move >>> 2);
+        }
+        System.out.println("game " + game + " of " + games + " on " + model.getGeometry() + ", started " +
+                Instant.ofEpochMilli(getStartMillis(game)));
+        System.out.println(getMoveCount(game) + " moves:" + moves);
+        System.out.println(resultName(model.getGameResult()));
+        for (int row = 0; row < model.getRows(); row++) {
+            StringBuilder line = new StringBuilder();
+            for (int column = 0; column < model.getColumns(); column++) {
+                int circle = model.getCircle(row, column);
+                line.append(circle == Connect4MoveMessage.YELLOW ? 'Y' : circle == Connect4MoveMessage.RED ? 'R' : '.');
+            }
+            System.out.println(line);
+        }
+    }
+
+    /**
+     * Replay every game and print how many each color won and how fast the games were replayed
+     *
+     * @throws IOException if a game can't be replayed
+     */
+    private void printSummary() throws IOException {
+        Connect4Model model = new Connect4Model();
+        // indexed by result, IN_PROGRESS, yellow, red and DRAW
+        int[] results = new int[4];
+        long moves = 0;
+        long begin = System.nanoTime();
+        for (int game = 0; game < games; game++) {
+            replay(game, model);
+            results[model.getGameResult()]++;
+            moves += getMoveCount(game);
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        System.out.printf("%d games, %d moves, %d bytes, replayed in %.3f s, %.0f games/s%n", games, moves, end,
+                seconds, games / Math.max(seconds, 1e-9));
+        for (int result = 1; result < results.length; result++)
+            System.out.printf("%-12s %d%n", resultName(result), results[result]);
+        System.out.printf("%-12s %d%n", resultName(Connect4Model.IN_PROGRESS), results[Connect4Model.IN_PROGRESS]);
+    }
+
+    /**
+     * Returns the offset of the GAME byte of a game
+     *
+     * @param game the number of the game, from 0
+     * @return - int offset in the journal
+     * @throws IllegalArgumentException if there is no such game
+     */
+    private int start(int game) throws IllegalArgumentException {
+        if (game < 0 || game >= games)
+            throw new IllegalArgumentException("There is no game " + game + " in the journal of " + games + " games");
+        return starts[game];
+    }
+
+    /**
+     * Describe the result of a game
+     *
+     * @param result IN_PROGRESS, the color of the winner or DRAW
+     * @return - String naming the result
+     */
+    private static String resultName(int result) {
+        if (result == Connect4Model.DRAW)
+            return "draw";
+        if (result == Connect4MoveMessage.YELLOW)
+            return "yellow won";
+        return result == Connect4MoveMessage.RED ? "red won" : "unfinished";
+    }
+}
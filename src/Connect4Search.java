@@ -0,0 +1,692 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Connect4Search.java Authors: Jeff Wiederkehr and Chris Herrera
+ *
+ * This class is the search engine for the computer player. It runs a negamax search with alpha-beta pruning directly on
+ * the bitboards of the Connect4Model by making and unmaking moves, so no board is copied while searching. Columns are
+ * tried from the center out because center columns take part in the most lines. When the depth runs out the position
+ * is scored by how many empty cells would complete a line for each color. Searched positions are kept in a
+ * Connect4TranspositionTable so a position reached again through a different move order is not searched twice.
+ *
+ * Boards that fit in one long, like the standard board, are searched with the bitboard methods of Connect4Geometry
+ * that find every playable and winning cell at once. Larger boards are searched the same way through the model
+ * instead, checking winning moves one column at a time, scoring positions with Connect4Model.countThreats and keying
+ * the table with the Zobrist hash of the position.
+ *
+ * Every move is searched by iterative deepening, one move deeper at a time, and the best move of the previous depth is
+ * tried first on the next one. Given a time budget the search keeps deepening until the time is used up and plays the
+ * best move of the last depth that was completed.
+ *
+ * When an opening book is set, bestMove plays the move from the book for every position the book holds and only
+ * searches once the game has left the book.
+ *
+ * While the opponent is thinking the search can ponder, which searches the position for the opponent until it is
+ * stopped. This fills the transposition table with every likely reply and the answers to it, so the next call to
+ * bestMove after the real move finds most of its work already done.
+ *
+ * With more than one thread the search runs as a lazy SMP search on a ForkJoinPool. The main worker searches the live
+ * model exactly like the single threaded search, while helper workers search copies of the board with a rotated root
+ * order and alternating depths. All workers share the transposition table, so the helpers fill it with positions the
+ * main worker reaches later. Only the main worker decides the move, and the helpers are stopped once it is done. With
+ * one thread no helpers run and the chosen move is always the same for the same position.
+ */
+public class Connect4Search implements Connect4Engine {
+    public static final int DEFAULT_DEPTH = 8;
+    // a win is worth more than any evaluation, faster wins score higher
+    static final int WIN_SCORE = 10000;
+    // scores this close to WIN_SCORE are wins counted in moves from the root, which is enough for the largest board
+    private static final int WIN_BOUND = WIN_SCORE - 1000;
+    // mixed into the Zobrist hash of large boards so the two colors to move never share a key
+    private static final long[] SIDE_KEYS = {0L, 0x5945_4C4C_4F57_0001L, 0x5245_4400_0000_0002L};
+    private final Connect4TranspositionTable table;
+    private Connect4OpeningBook book;
+    private int depth;
+    private int threads = 1;
+    private ForkJoinPool pool;
+    private long nodes;
+    private int completedDepth;
+    private int completedScore;
+    // System.nanoTime after which the main worker stops deepening
+    private long deadline;
+    // tells every worker to give up, set when the time is up, when the main worker has finished or by stop
+    private volatile boolean stopped;
+    // counts calls to stop so a ponder that starts after it was stopped does not run
+    private int stopCount;
+    // true when the last search was a ponder, its table entries belong to the next search
+    private boolean pondered;
+    // the board of the last search, the table is cleared when it changes
+    private Connect4Geometry geometry;
+
+    /**
+     * Construct a search with the default depth
+     */
+    public Connect4Search() {
+        this(DEFAULT_DEPTH);
+    }
+
+    /**
+     * Construct a search that looks the given number of moves ahead
+     *
+     * @param depth number of moves to search, at least 1
+     */
+    public Connect4Search(int depth) {
+        this(depth, new Connect4TranspositionTable());
+    }
+
+    /**
+     * Construct a search that looks the given number of moves ahead and stores positions in the given table
+     *
+     * @param depth number of moves to search, at least 1
+     * @param table transposition table used by the search
+     */
+    public Connect4Search(int depth, Connect4TranspositionTable table) {
+        this.table = table;
+        setDepth(depth);
+    }
+
+    /**
+     * This method sets how many moves ahead the search looks
+     *
+     * @param depth number of moves to search, at least 1
+     * @throws IllegalArgumentException if the depth is less than 1
+     */
+    public void setDepth(int depth) throws IllegalArgumentException {
+        if (depth < 1)
+            throw new IllegalArgumentException("Search depth must be at least 1");
+        this.depth = depth;
+    }
+
+    /**
+     * This method sets the opening book that is looked up before searching
+     *
+     * @param book the opening book or null to always search
+     */
+    public void setOpeningBook(Connect4OpeningBook book) {
+        this.book = book;
+    }
+
+    /**
+     * This method sets how many threads search every move. The pool of threads is created on the first parallel search
+     *
+     * @param threads number of threads, at least 1
+     * @throws IllegalArgumentException if the number of threads is less than 1
+     */
+    public void setThreads(int threads) throws IllegalArgumentException {
+        if (threads < 1)
+            throw new IllegalArgumentException("Search threads must be at least 1");
+        if (threads != this.threads && pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Returns how many threads search every move
+     *
+     * @return - int number of search threads
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Returns how many moves ahead the search looks
+     *
+     * @return - int search depth
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Returns the deepest search the main worker completed during the last call to bestMove
+     *
+     * @return - int number of moves searched for the chosen move
+     */
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    /**
+     * Returns the score of the chosen move after the deepest search the main worker completed during the last call to
+     * bestMove, from the view of the color that moves. Wins score close to WIN_SCORE and losses close to -WIN_SCORE
+     *
+     * @return - int score of the chosen move, 0 when it came from the opening book
+     */
+    public int getCompletedScore() {
+        return completedScore;
+    }
+
+    /**
+     * Returns the number of positions visited by the last call to bestMove, counted over every thread
+     *
+     * @return - long node count of the last search
+     */
+    public long getNodeCount() {
+        return nodes;
+    }
+
+    /**
+     * Find the best column for the given color to play in the current position of the model, searching as deep as the
+     * depth of this search. The model is left exactly as it was found. If the board is full -1 is returned
+     *
+     * @param model the game to search, it must not be changed by anyone else during the search
+     * @param color the color to move, 1 = yellow and 2 = red
+     * @return - int column of the best move or -1 if there is no legal move
+     */
+    @Override
+    public int bestMove(Connect4Model model, int color) {
+        return bestMove(model, color, 0);
+    }
+
+    /**
+     * Find the best column for the given color to play within a time budget. The search deepens until the time is up
+     * or the end of the game is reached and returns the best move of the last completed depth. The first depth is
+     * always completed, so a move is returned even when the budget is very small. A position in the opening book is
+     * answered from the book without searching
+     *
+     * @param model    the game to search, it must not be changed by anyone else during the search
+     * @param color    the color to move, 1 = yellow and 2 = red
+     * @param moveTime milliseconds to search for, or 0 to search to the depth of this search instead
+     * @return - int column of the best move or -1 if there is no legal move
+     */
+    @Override
+    public int bestMove(Connect4Model model, int color, long moveTime) {
+        if (book != null) {
+            int column = book.lookup(model, color);
+            if (column != -1) {
+                nodes = 0;
+                completedDepth = 0;
+                completedScore = 0;
+                return column;
+            }
+        }
+        synchronized (this) {
+            useGeometry(model.getGeometry());
+            if (!pondered)
+                table.newSearch();
+            pondered = false;
+            stopped = false;
+        }
+        long deadline = moveTime > 0 ? System.nanoTime() + moveTime * 1_000_000L : Long.MAX_VALUE;
+        return search(model, color, deadline, moveTime > 0 ? emptyCells(model) : depth);
+    }
+
+    /**
+     * Search the position for the given color until stop is called or the end of the game is reached. This is meant
+     * to run while the opponent thinks, with the color of the opponent, so the table is ready for the next bestMove.
+     * The ticket from getStopCount has to be taken before the ponder is handed to another thread, if stop is called
+     * in between the ponder returns without searching
+     *
+     * @param model  the game to search, it must not be changed by anyone else during the search
+     * @param color  the color to move, usually the opponent of the computer player
+     * @param ticket value of getStopCount when the ponder was started
+     * @return - int the column the opponent is expected to play or -1 if the ponder was stopped before it started
+     */
+    public int ponder(Connect4Model model, int color, int ticket) {
+        synchronized (this) {
+            if (ticket != stopCount)
+                return -1;
+            useGeometry(model.getGeometry());
+            table.newSearch();
+            pondered = true;
+            stopped = false;
+        }
+        return search(model, color, Long.MAX_VALUE, emptyCells(model));
+    }
+
+    /**
+     * Returns how many times stop has been called, used as the ticket of ponder
+     *
+     * @return - int number of calls to stop
+     */
+    public synchronized int getStopCount() {
+        return stopCount;
+    }
+
+    /**
+     * Stop the running search or ponder from another thread. A stopped bestMove still returns the move of the last
+     * completed depth
+     */
+    public synchronized void stop() {
+        stopCount++;
+        stopped = true;
+    }
+
+    /**
+     * Forget every position of the table, so the next search finds the same moves as a new search would. Used before
+     * an unrelated game that has to be played the same way every time
+     */
+    public synchronized void clear() {
+        table.clear();
+        pondered = false;
+    }
+
+    /**
+     * Clear the table when the board is not the one of the last search, the entries of another board hold moves and
+     * scores that don't fit this one
+     *
+     * @param geometry the board about to be searched
+     */
+    private void useGeometry(Connect4Geometry geometry) {
+        if (this.geometry != null && !this.geometry.equals(geometry)) {
+            table.clear();
+            pondered = false;
+        }
+        this.geometry = geometry;
+    }
+
+    /**
+     * Run the iterative deepening search on the calling thread, or on the pool with the helpers when more than one
+     * thread is used
+     *
+     * @param model    the game to search
+     * @param color    the color to move
+     * @param deadline System.nanoTime after which the search stops deepening
+     * @param maxDepth deepest search to run
+     * @return - int column of the best move or -1 if there is no legal move
+     */
+    private int search(Connect4Model model, int color, long deadline, int maxDepth) {
+        completedDepth = 0;
+        completedScore = 0;
+        this.deadline = deadline;
+        Worker main = new Worker(model, false);
+        if (threads == 1) {
+            int column = main.deepen(maxDepth, color, 0);
+            nodes = main.nodes;
+            return column;
+        }
+        if (pool == null)
+            pool = new ForkJoinPool(threads);
+        List<Worker> helpers = new ArrayList<>();
+        List<Future<?>> running = new ArrayList<>();
+        for (int i = 1; i < threads; i++) {
+            Worker helper = new Worker(model.copyBoard(), true);
+            int rotation = i;
+            int helperDepth = maxDepth + (i & 1);
+            helpers.add(helper);
+            running.add(pool.submit(() -> helper.deepen(helperDepth, color, rotation)));
+        }
+        try {
+            int column = pool.submit(() -> main.deepen(maxDepth, color, 0)).get();
+            nodes = main.nodes;
+            return column;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Search was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Search failed", e.getCause());
+        } finally {
+            stopped = true;
+            for (Future<?> future : running) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    System.err.println("Search helper failed: " + e.getCause());
+                }
+            }
+            for (Worker helper : helpers)
+                nodes += helper.nodes;
+        }
+    }
+
+    /**
+     * A single search thread. Each worker searches its own board so the workers never touch each other's state, only
+     * the transposition table is shared
+     */
+    private final class Worker {
+        private final Connect4Model model;
+        private final Connect4Geometry geometry;
+        private final int[] moveOrder;
+        private final boolean helper;
+        private long nodes;
+        private int rootScore;
+
+        /**
+         * Construct a worker for the given board
+         *
+         * @param model  the board to search, the live model for the main worker and a copy for helpers
+         * @param helper true if this worker only fills the table and never decides the move
+         */
+        Worker(Connect4Model model, boolean helper) {
+            this.model = model;
+            this.helper = helper;
+            geometry = model.getGeometry();
+            moveOrder = geometry.getMoveOrder();
+        }
+
+        /**
+         * Search one move deeper at a time until the maximum depth, the end of the game or the search is stopped. A
+         * depth that is stopped before it is finished is thrown away
+         *
+         * @param maxDepth deepest search to run
+         * @param color    the color to move
+         * @param rotation how many columns to rotate the center first order by, helpers use this to start apart
+         * @return - int column of the best move of the last completed depth or -1 if there is no legal move
+         */
+        int deepen(int maxDepth, int color, int rotation) {
+            int bestColumn = -1;
+            for (int depth = 1; depth <= maxDepth; depth++) {
+                int column = searchRoot(depth, color, rotation);
+                if (aborted())
+                    break;
+                bestColumn = column;
+                if (!helper) {
+                    completedDepth = depth;
+                    completedScore = rootScore;
+                }
+                if (column == -1 || Math.abs(rootScore) > WIN_BOUND)
+                    break;
+            }
+            return bestColumn;
+        }
+
+        /**
+         * Check if this worker should give up. The main worker always finishes its first depth so there is a move to
+         * return
+         *
+         * @return true if the search was stopped and the current result has to be thrown away
+         */
+        private boolean aborted() {
+            return stopped && (helper || completedDepth > 0);
+        }
+
+        /**
+         * Search every legal column at the root and return the best one. A column that wins right away is played
+         * without searching, otherwise the best column of the previous depth is tried first
+         *
+         * @param depth    number of moves to search
+         * @param color    the color to move
+         * @param rotation how many columns to rotate the center first order by
+         * @return - int column of the best move or -1 if there is no legal move
+         */
+        int searchRoot(int depth, int color, int rotation) {
+            if (!geometry.fitsLong())
+                return searchRootWide(depth, color, rotation);
+            long own = model.getBoard(color);
+            long mask = model.getMask();
+            long possible = geometry.possibleCells(mask);
+            long winning = geometry.winningCells(own, mask) & possible;
+            long key = geometry.positionKey(own, mask);
+            long entry = table.probe(key);
+            int tableMove = entry == 0 ? Connect4TranspositionTable.NO_MOVE : Connect4TranspositionTable.move(entry);
+            int bestColumn = -1;
+            int bestScore = -WIN_SCORE - 1;
+            int alpha = -WIN_SCORE - 1;
+            for (int i = -1; i < moveOrder.length; i++) {
+                int column = i < 0 ? tableMove : moveOrder[(i + rotation) % moveOrder.length];
+                if (column == Connect4TranspositionTable.NO_MOVE || (i >= 0 && column == tableMove)
+                        || (possible & geometry.columnMask(column)) == 0)
+                    continue;
+                if ((winning & geometry.columnMask(column)) != 0) {
+                    rootScore = WIN_SCORE - 1;
+                    return column;
+                }
+                model.makeMove(column, color);
+                int score = -negamax(depth - 1, -WIN_SCORE - 1, -alpha, 3 - color, 1);
+                model.unmakeMove(column, color);
+                if (aborted())
+                    return bestColumn;
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestColumn = column;
+                    alpha = Math.max(alpha, score);
+                }
+            }
+            rootScore = bestScore;
+            if (bestColumn != -1)
+                table.store(key, bestScore, depth, Connect4TranspositionTable.EXACT, bestColumn);
+            return bestColumn;
+        }
+
+        /**
+         * Score the position for the color to move. A move that wins right away is found before going deeper, and
+         * when the depth runs out the position is evaluated instead of searched. A stored entry that was searched deep
+         * enough ends the search early, otherwise its best move is tried first. Once the search is stopped every call
+         * returns right away without storing anything
+         *
+         * @param depth number of moves left to search
+         * @param alpha lowest score the color to move is already sure of
+         * @param beta  highest score the opponent will allow
+         * @param color the color to move
+         * @param ply   number of moves made since the root
+         * @return - int score of the position from the point of view of the color to move
+         */
+        private int negamax(int depth, int alpha, int beta, int color, int ply) {
+            nodes++;
+            if (!helper && (nodes & 1023) == 0 && completedDepth > 0 && System.nanoTime() > deadline)
+                stopped = true;
+            if (aborted())
+                return 0;
+            long own = model.getBoard(color);
+            long mask = model.getMask();
+            long possible = geometry.possibleCells(mask);
+            if (possible == 0)
+                return 0;
+            if ((geometry.winningCells(own, mask) & possible) != 0)
+                return WIN_SCORE - ply - 1;
+            if (depth == 0)
+                return evaluate(geometry, own, model.getBoard(3 - color), mask);
+            long key = geometry.positionKey(own, mask);
+            long entry = table.probe(key);
+            int tableMove = Connect4TranspositionTable.NO_MOVE;
+            if (entry != 0) {
+                tableMove = Connect4TranspositionTable.move(entry);
+                if (Connect4TranspositionTable.depth(entry) >= depth) {
+                    int score = fromTable(Connect4TranspositionTable.score(entry), ply);
+                    int bound = Connect4TranspositionTable.bound(entry);
+                    if (bound == Connect4TranspositionTable.EXACT
+                            || (bound == Connect4TranspositionTable.LOWER_BOUND && score >= beta)
+                            || (bound == Connect4TranspositionTable.UPPER_BOUND && score <= alpha))
+                        return score;
+                }
+            }
+            int originalAlpha = alpha;
+            int best = -WIN_SCORE - 1;
+            int bestColumn = Connect4TranspositionTable.NO_MOVE;
+            // -1 tries the move from the table before the center first order
+            for (int i = -1; i < moveOrder.length; i++) {
+                int column = i < 0 ? tableMove : moveOrder[i];
+                if (column == Connect4TranspositionTable.NO_MOVE || (i >= 0 && column == tableMove)
+                        || (possible & geometry.columnMask(column)) == 0)
+                    continue;
+                model.makeMove(column, color);
+                int score = -negamax(depth - 1, -beta, -alpha, 3 - color, ply + 1);
+                model.unmakeMove(column, color);
+                if (aborted())
+                    return 0;
+                if (score > best) {
+                    best = score;
+                    bestColumn = column;
+                    if (score > alpha) {
+                        alpha = score;
+                        if (alpha >= beta)
+                            break;
+                    }
+                }
+            }
+            int bound = best <= originalAlpha ? Connect4TranspositionTable.UPPER_BOUND
+                    : best >= beta ? Connect4TranspositionTable.LOWER_BOUND : Connect4TranspositionTable.EXACT;
+            table.store(key, toTable(best, ply), depth, bound, bestColumn);
+            return best;
+        }
+
+        /**
+         * searchRoot for a board that does not fit in one long, working on the model one column at a time
+         *
+         * @param depth    number of moves to search
+         * @param color    the color to move
+         * @param rotation how many columns to rotate the center first order by
+         * @return - int column of the best move or -1 if there is no legal move
+         */
+        private int searchRootWide(int depth, int color, int rotation) {
+            long key = model.getHash() ^ SIDE_KEYS[color];
+            long entry = table.probe(key);
+            int tableMove = entry == 0 ? Connect4TranspositionTable.NO_MOVE : Connect4TranspositionTable.move(entry);
+            for (int column : moveOrder) {
+                if (model.canPlay(column) && model.isWinningMove(column, color)) {
+                    rootScore = WIN_SCORE - 1;
+                    return column;
+                }
+            }
+            int bestColumn = -1;
+            int bestScore = -WIN_SCORE - 1;
+            int alpha = -WIN_SCORE - 1;
+            for (int i = -1; i < moveOrder.length; i++) {
+                int column = i < 0 ? tableMove : moveOrder[(i + rotation) % moveOrder.length];
+                if (column == Connect4TranspositionTable.NO_MOVE || (i >= 0 && column == tableMove)
+                        || column >= moveOrder.length || !model.canPlay(column))
+                    continue;
+                model.makeMove(column, color);
+                int score = -negamaxWide(depth - 1, -WIN_SCORE - 1, -alpha, 3 - color, 1);
+                model.unmakeMove(column, color);
+                if (aborted())
+                    return bestColumn;
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestColumn = column;
+                    alpha = Math.max(alpha, score);
+                }
+            }
+            rootScore = bestScore;
+            if (bestColumn != -1)
+                table.store(key, bestScore, depth, Connect4TranspositionTable.EXACT, bestColumn);
+            return bestColumn;
+        }
+
+        /**
+         * negamax for a board that does not fit in one long. Winning moves are found by checking the lines through
+         * the top cell of every column, and positions are scored by Connect4Model.countThreats
+         *
+         * @param depth number of moves left to search
+         * @param alpha lowest score the color to move is already sure of
+         * @param beta  highest score the opponent will allow
+         * @param color the color to move
+         * @param ply   number of moves made since the root
+         * @return - int score of the position from the point of view of the color to move
+         */
+        private int negamaxWide(int depth, int alpha, int beta, int color, int ply) {
+            nodes++;
+            if (!helper && (nodes & 1023) == 0 && completedDepth > 0 && System.nanoTime() > deadline)
+                stopped = true;
+            if (aborted())
+                return 0;
+            boolean full = true;
+            for (int column : moveOrder) {
+                if (!model.canPlay(column))
+                    continue;
+                if (model.isWinningMove(column, color))
+                    return WIN_SCORE - ply - 1;
+                full = false;
+            }
+            if (full)
+                return 0;
+            if (depth == 0)
+                return model.countThreats(color) - model.countThreats(3 - color);
+            long key = model.getHash() ^ SIDE_KEYS[color];
+            long entry = table.probe(key);
+            int tableMove = Connect4TranspositionTable.NO_MOVE;
+            if (entry != 0) {
+                tableMove = Connect4TranspositionTable.move(entry);
+                if (Connect4TranspositionTable.depth(entry) >= depth) {
+                    int score = fromTable(Connect4TranspositionTable.score(entry), ply);
+                    int bound = Connect4TranspositionTable.bound(entry);
+                    if (bound == Connect4TranspositionTable.EXACT
+                            || (bound == Connect4TranspositionTable.LOWER_BOUND && score >= beta)
+                            || (bound == Connect4TranspositionTable.UPPER_BOUND && score <= alpha))
+                        return score;
+                }
+            }
+            int originalAlpha = alpha;
+            int best = -WIN_SCORE - 1;
+            int bestColumn = Connect4TranspositionTable.NO_MOVE;
+            for (int i = -1; i < moveOrder.length; i++) {
+                int column = i < 0 ? tableMove : moveOrder[i];
+                if (column == Connect4TranspositionTable.NO_MOVE || (i >= 0 && column == tableMove)
+                        || column >= moveOrder.length || !model.canPlay(column))
+                    continue;
+                model.makeMove(column, color);
+                int score = -negamaxWide(depth - 1, -beta, -alpha, 3 - color, ply + 1);
+                model.unmakeMove(column, color);
+                if (aborted())
+                    return 0;
+                if (score > best) {
+                    best = score;
+                    bestColumn = column;
+                    if (score > alpha) {
+                        alpha = score;
+                        if (alpha >= beta)
+                            break;
+                    }
+                }
+            }
+            int bound = best <= originalAlpha ? Connect4TranspositionTable.UPPER_BOUND
+                    : best >= beta ? Connect4TranspositionTable.LOWER_BOUND : Connect4TranspositionTable.EXACT;
+            table.store(key, toTable(best, ply), depth, bound, bestColumn);
+            return best;
+        }
+    }
+
+    /**
+     * Wins are scored by the number of moves from the root, the table stores them by the number of moves from the
+     * position instead so the entry is right wherever the position is reached
+     *
+     * @param score score relative to the root
+     * @param ply   number of moves made since the root
+     * @return - int score relative to the position
+     */
+    private static int toTable(int score, int ply) {
+        if (score > WIN_BOUND)
+            return score + ply;
+        if (score < -WIN_BOUND)
+            return score - ply;
+        return score;
+    }
+
+    /**
+     * Undo toTable for a position reached after the given number of moves
+     *
+     * @param score score relative to the position
+     * @param ply   number of moves made since the root
+     * @return - int score relative to the root
+     */
+    private static int fromTable(int score, int ply) {
+        if (score > WIN_BOUND)
+            return score - ply;
+        if (score < -WIN_BOUND)
+            return score + ply;
+        return score;
+    }
+
+    /**
+     * Score a position that is not searched any deeper by the difference in empty cells that would complete a line for
+     * each color
+     *
+     * @param geometry the board of the position, it must fit in one long
+     * @param own      bitboard of the color to move
+     * @param opponent bitboard of the other color
+     * @param mask     bitboard of every occupied cell
+     * @return - int positive if the color to move has more open threats
+     */
+    static int evaluate(Connect4Geometry geometry, long own, long opponent, long mask) {
+        return Long.bitCount(geometry.winningCells(own, mask)) - Long.bitCount(geometry.winningCells(opponent, mask));
+    }
+
+    /**
+     * Returns the number of empty cells, which is the most moves left in the game
+     *
+     * @param model the game to count
+     * @return - int number of empty cells, at least 1
+     */
+    private static int emptyCells(Connect4Model model) {
+        return Math.max(1, model.getGeometry().getCells() - model.getMoveCount());
+    }
+}
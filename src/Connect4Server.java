@@ -0,0 +1,749 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Connect4Server.java Authors: Jeff Wiederkehr and Chris Herrera
+ *
+ * This class hosts many games in one process. Players connect with Connect4Controller.startClient the same way they
+ * connect to a player that started a server. The acceptor thread reads the protocol header and the JOIN message of
+ * every new connection and pairs the players through a Connect4Lobby, so humans play humans and computers play
+ * computers of the same strength. Every pair becomes a game with its own Connect4Model that is handed to one of a few
+ * event loop threads. The event loop reads the moves of both players, checks them against the
+ * model and passes them on to the opponent. All sockets are non-blocking and every thread waits on its own Selector,
+ * so thousands of games cost their models and socket buffers but no threads.
+ *
+ * The first player of a pair plays yellow and moves first, both are told their color with a START message. A player
+ * that disconnects, resigns, breaks the protocol or plays out of turn loses the game: the opponent is sent a RESIGN
+ * with the color of that player and both connections are closed. A request to take back a move is passed on to the
+ * opponent and the move is only taken back from the model when the opponent agrees, see Connect4Protocol.
+ *
+ * A game that is won or drawn stops counting as played. No move is accepted until a RESET starts a new game, and a
+ * player that disconnects from a finished game has lost nothing: the opponent is disconnected without a RESIGN. A
+ * RESET is only accepted once the game is won or drawn, a RESET before that would wipe a game without a result and
+ * breaks the protocol like any other illegal message.
+ *
+ * Every game of a server is played on the same Connect4Geometry, the standard board unless another one is given. A
+ * room for a variant like 7 by 8 or connect 5 is a server of its own on another port. The JOIN of a player names the
+ * board it plays on and a player on another board is disconnected instead of paired, so both players of a game
+ * always have the board of the server, which the START repeats.
+ */
+public class Connect4Server implements Closeable {
+    public static final int DEFAULT_PORT = 4000;
+    static final long REPORT_MILLIS = 10_000;
+    private static final int BUFFER_BYTES = 64;
+    private final ServerSocketChannel listener;
+    private final Selector acceptSelector;
+    private final EventLoop[] loops;
+    private final Thread acceptor;
+    private final AtomicInteger games = new AtomicInteger();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final Connect4Lobby<Player> lobby = new Connect4Lobby<>();
+    private final Connect4Geometry geometry;
+    private volatile boolean closed = false;
+    // only used by the acceptor thread
+    private int nextLoop = 0;
+
+    /**
+     * Construct a Connect4Server for the standard board listening on the given port and start its threads
+     *
+     * @param port    the port to listen on, 0 for any free port
+     * @param threads number of event loop threads, at least 1
+     * @throws IOException              if the port can't be opened
+     * @throws IllegalArgumentException if the number of threads is less than 1
+     */
+    public Connect4Server(int port, int threads) throws IOException, IllegalArgumentException {
+        this(port, threads, Connect4Geometry.STANDARD);
+    }
+
+    /**
+     * Construct a Connect4Server whose games are played on the given board, listening on the given port, and start
+     * its threads
+     *
+     * @param port     the port to listen on, 0 for any free port
+     * @param threads  number of event loop threads, at least 1
+     * @param geometry the board of every game
+     * @throws IOException              if the port can't be opened
+     * @throws IllegalArgumentException if the number of threads is less than 1
+     */
+    public Connect4Server(int port, int threads, Connect4Geometry geometry) throws IOException,
+            IllegalArgumentException {
+        this.geometry = geometry;
+        if (threads < 1)
+            throw new IllegalArgumentException("Server threads must be at least 1");
+        listener = ServerSocketChannel.open();
+        listener.bind(new InetSocketAddress(port), 1024);
+        listener.configureBlocking(false);
+        acceptSelector = Selector.open();
+        listener.register(acceptSelector, SelectionKey.OP_ACCEPT);
+        loops = new EventLoop[threads];
+        for (int i = 0; i < threads; i++)
+            loops[i] = new EventLoop(i);
+        acceptor = new Thread(this::acceptLoop, "Connect4 acceptor");
+        acceptor.start();
+    }
+
+    /**
+     * Start a server from the command line and run it until the process is stopped. The number of games and the
+     * lobby are reported every ten seconds
+     *
+     * @param args optional port, number of event loop threads, and rows, columns and line length of the board
+     */
+    public static void main(String[] args) {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        try {
+            Connect4Server server = new Connect4Server(port, threads, geometry(args, 2));
+            System.out.println("Connect 4 server listening on port " + server.getPort() + " with " + threads +
+                    " event loops for " + server.getGeometry() + " games");
+            while (server.acceptor.isAlive()) {
+                server.acceptor.join(REPORT_MILLIS);
+                System.out.println(server.getGameCount() + " games, " + server.getConnectionCount() +
+                        " connections, " + server.getLobby());
+            }
+        } catch (IOException e) {
+            System.err.println("Something went wrong with the network! " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Something went wrong starting the server! " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Read the board of a server from the command line, the standard board if the arguments are missing
+     *
+     * @param args  the command line arguments
+     * @param first index of the rows argument, followed by the columns and the line length
+     * @return - Connect4Geometry of the games of the server
+     * @throws IllegalArgumentException if the board does not exist
+     */
+    static Connect4Geometry geometry(String[] args, int first) throws IllegalArgumentException {
+        if (args.length <= first)
+            return Connect4Geometry.STANDARD;
+        if (args.length < first + 3)
+            throw new IllegalArgumentException("A board needs rows, columns and the length of a line");
+        return new Connect4Geometry(Integer.parseInt(args[first]), Integer.parseInt(args[first + 1]),
+                Integer.parseInt(args[first + 2]));
+    }
+
+    /**
+     * Returns the port the server listens on
+     *
+     * @return - int port number
+     */
+    public int getPort() {
+        return listener.socket().getLocalPort();
+    }
+
+    /**
+     * Returns the board every game of this server is played on
+     *
+     * @return - Connect4Geometry of the games
+     */
+    public Connect4Geometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Returns the number of games that are being played
+     *
+     * @return - int number of paired games that have not ended
+     */
+    public int getGameCount() {
+        return games.get();
+    }
+
+    /**
+     * Returns the lobby that pairs the players, for its queue depths and wait times
+     *
+     * @return - Connect4Lobby of this server
+     */
+    public Connect4Lobby<?> getLobby() {
+        return lobby;
+    }
+
+    /**
+     * Returns the number of open player connections, including players waiting for an opponent
+     *
+     * @return - int number of open connections
+     */
+    public int getConnectionCount() {
+        return connections.get();
+    }
+
+    /**
+     * Stop accepting players, close every connection and wait for the threads of the server to finish
+     */
+    @Override
+    public void close() {
+        closed = true;
+        acceptSelector.wakeup();
+        for (EventLoop loop : loops)
+            loop.selector.wakeup();
+        try {
+            acceptor.join();
+            for (EventLoop loop : loops)
+                loop.thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Check a move sent by a player against the board of its game
+     *
+     * @param model  the board of the game
+     * @param turn   the color whose turn it is
+     * @param player the color of the player that sent the move
+     * @param column the column of the move
+     * @param color  the color of the move
+     * @return - boolean true if it is the player's turn, the move has the player's color and the column has room
+     */
+    static boolean isLegalMove(Connect4Model model, int turn, int player, int column, int color) {
+        return turn == player && color == player && !model.isGameOver() && column < model.getColumns() &&
+                model.canPlay(column);
+    }
+
+    /**
+     * Check an undo sent by a player against the board of its game. Both the request of the player that made the last
+     * move and the answer of its opponent that agrees name the color of that move, and either is only valid while the
+     * other color is to move
+     *
+     * @param model the board of the game
+     * @param turn  the color whose turn it is
+     * @param color the color of the move to take back
+     * @return - boolean true if the last move has the given color and it is the turn of the other color
+     */
+    static boolean canUndo(Connect4Model model, int turn, int color) {
+        return model.getMoveCount() > 0 && model.getLastColor() == color && turn != color;
+    }
+
+    /**
+     * Accept new connections, read their headers and pair them until the server is closed. Runs on the acceptor
+     * thread
+     */
+    private void acceptLoop() {
+        try {
+            while (!closed) {
+                acceptSelector.select();
+                Iterator<SelectionKey> keys = acceptSelector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid())
+                        continue;
+                    if (key.isAcceptable())
+                        acceptPlayers();
+                    else
+                        readLobby((Player) key.attachment());
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            System.err.println("Something went wrong with the network! " + e.getMessage());
+        } finally {
+            closeAll(acceptSelector);
+            try {
+                listener.close();
+            } catch (IOException e) {
+                System.err.println("Something went wrong closing the server: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Accept every pending connection and wait for its header in the lobby
+     *
+     * @throws IOException if the listening socket fails
+     */
+    private void acceptPlayers() throws IOException {
+        SocketChannel channel;
+        while ((channel = listener.accept()) != null) {
+            connections.incrementAndGet();
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Player player = new Player(channel);
+            player.key = channel.register(acceptSelector, SelectionKey.OP_READ, player);
+        }
+    }
+
+    /**
+     * Read from a player in the lobby. The first bytes must be the protocol header followed by a JOIN with the lobby
+     * queue, pings are allowed in between. Once the player has joined it waits in its queue or is paired with the
+     * player that waited longest in it. Anything the player sends after the JOIN is kept for the event loop of the game
+     *
+     * @param player the player with bytes to read
+     */
+    private void readLobby(Player player) {
+        try {
+            if (player.channel.read(player.in) < 0 || !player.in.hasRemaining()) {
+                drop(player);
+                return;
+            }
+        } catch (IOException e) {
+            drop(player);
+            return;
+        }
+        if (player.queue >= 0)
+            return;
+        ByteBuffer in = player.in;
+        in.flip();
+        if (!player.greeted) {
+            if (in.remaining() < Connect4Protocol.HEADER_BYTES) {
+                in.compact();
+                return;
+            }
+            if (!Connect4Protocol.getHeader(in)) {
+                drop(player);
+                return;
+            }
+            player.greeted = true;
+        }
+        while (player.queue < 0 && in.hasRemaining()) {
+            int type = in.get(in.position()) & 0xFF;
+            if (type == Connect4Protocol.PING) {
+                in.get();
+            } else if (type == Connect4Protocol.JOIN) {
+                if (in.remaining() < Connect4Protocol.frameLength(type))
+                    break;
+                in.get();
+                int queue = in.get() & 0xFF;
+                if (!geometry.equals(Connect4Protocol.getGeometry(in))) {
+                    drop(player);
+                    return;
+                }
+                player.queue = queue;
+            } else {
+                drop(player);
+                return;
+            }
+        }
+        in.compact();
+        if (player.queue < 0)
+            return;
+        Player opponent = lobby.join(player.queue, player);
+        if (opponent != null) {
+            opponent.key.cancel();
+            player.key.cancel();
+            games.incrementAndGet();
+            loops[nextLoop].add(new Game(geometry, opponent, player));
+            nextLoop = (nextLoop + 1) % loops.length;
+        }
+    }
+
+    /**
+     * Close the connection of a player that left the lobby or does not speak the protocol
+     *
+     * @param player the player to drop
+     */
+    private void drop(Player player) {
+        if (player.queue >= 0)
+            lobby.leave(player.queue, player);
+        close(player);
+    }
+
+    /**
+     * Close the connection of a player once
+     *
+     * @param player the player to close
+     */
+    private void close(Player player) {
+        if (player.closed)
+            return;
+        player.closed = true;
+        connections.decrementAndGet();
+        if (player.key != null)
+            player.key.cancel();
+        try {
+            player.channel.close();
+        } catch (IOException e) {
+            System.err.println("Something went wrong closing a connection: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Close every player still registered with a selector and the selector itself. Players whose key was cancelled
+     * have moved on to an event loop and are left alone
+     *
+     * @param selector the selector to close
+     */
+    private void closeAll(Selector selector) {
+        try {
+            for (SelectionKey key : selector.keys())
+                if (key.isValid() && key.attachment() instanceof Player)
+                    close((Player) key.attachment());
+            selector.close();
+        } catch (IOException | ClosedSelectorException e) {
+            System.err.println("Something went wrong closing the server: " + e.getMessage());
+        }
+    }
+
+    /**
+     * One connection to a player. The buffers hold the bytes of messages that have not been completely read or
+     * written
+     */
+    private static final class Player {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(BUFFER_BYTES);
+        final ByteBuffer out = ByteBuffer.allocate(BUFFER_BYTES);
+        SelectionKey key;
+        Game game;
+        int color;
+        // the lobby queue from the JOIN message, -1 until it has arrived
+        int queue = -1;
+        boolean greeted = false;
+        // set when the game is over, the connection is closed as soon as the last message has been written
+        boolean closing = false;
+        boolean closed = false;
+
+        /**
+         * Construct a Player for an accepted connection
+         *
+         * @param channel the connection to the player
+         */
+        Player(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * A game between two players with the board that their moves are checked against
+     */
+    private static final class Game {
+        final Connect4Model model;
+        final Player yellow;
+        final Player red;
+        int turn = Connect4MoveMessage.YELLOW;
+        // set when a player left, the players are being disconnected
+        boolean over = false;
+        // set while the board shows a win or a draw, until a RESET or an undo opens it again
+        boolean finished = false;
+
+        /**
+         * Construct a Game between two players
+         *
+         * @param geometry the board of the game
+         * @param yellow   the player that moves first
+         * @param red      the other player
+         */
+        Game(Connect4Geometry geometry, Player yellow, Player red) {
+            model = new Connect4Model(geometry);
+            this.yellow = yellow;
+            this.red = red;
+            yellow.game = this;
+            yellow.color = Connect4MoveMessage.YELLOW;
+            red.game = this;
+            red.color = Connect4MoveMessage.RED;
+        }
+
+        /**
+         * Returns the opponent of a player of this game
+         *
+         * @param player one of the players
+         * @return - Player the other player
+         */
+        Player opponent(Player player) {
+            return player == yellow ? red : yellow;
+        }
+    }
+
+    /**
+     * A thread that runs the games handed to it. All reads and writes of its games happen on this thread, so the
+     * games need no locking
+     */
+    private final class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<Game> added = new ConcurrentLinkedQueue<>();
+        private final Thread thread;
+
+        /**
+         * Construct an EventLoop and start its thread
+         *
+         * @param index number of the loop used in the thread name
+         * @throws IOException if the selector can't be opened
+         */
+        EventLoop(int index) throws IOException {
+            selector = Selector.open();
+            thread = new Thread(this, "Connect4 game loop " + index);
+            thread.start();
+        }
+
+        /**
+         * Hand a new game to this loop. Called by the acceptor thread
+         *
+         * @param game the game to run
+         */
+        void add(Game game) {
+            added.add(game);
+            selector.wakeup();
+        }
+
+        /**
+         * Run the games until the server is closed
+         */
+        @Override
+        public void run() {
+            try {
+                while (!closed) {
+                    selector.select();
+                    Game game;
+                    while ((game = added.poll()) != null)
+                        start(game);
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        Player player = (Player) key.attachment();
+                        if (key.isValid() && key.isWritable())
+                            flush(player);
+                        if (key.isValid() && key.isReadable())
+                            read(player);
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                System.err.println("Something went wrong with the network! " + e.getMessage());
+            } finally {
+                Game game;
+                while ((game = added.poll()) != null)
+                    end(game);
+                for (SelectionKey key : selector.keys())
+                    end(((Player) key.attachment()).game);
+                closeAll(selector);
+            }
+        }
+
+        /**
+         * Register the players of a new game, send them the header and their colors, and handle anything they sent
+         * while they waited in the lobby
+         *
+         * @param game the new game
+         */
+        private void start(Game game) {
+            for (Player player : new Player[] {game.yellow, game.red}) {
+                try {
+                    player.key = player.channel.register(selector, SelectionKey.OP_READ, player);
+                } catch (IOException e) {
+                    forfeit(player);
+                    return;
+                }
+                Connect4Protocol.putHeader(player.out);
+                Connect4Protocol.putMessage(player.out, Connect4Protocol.START, player.color, game.model.getGeometry());
+                flush(player);
+            }
+            handle(game.yellow);
+            handle(game.red);
+        }
+
+        /**
+         * Read the bytes a player sent and handle the complete messages
+         *
+         * @param player the player with bytes to read
+         */
+        private void read(Player player) {
+            try {
+                if (player.channel.read(player.in) < 0) {
+                    forfeit(player);
+                    return;
+                }
+            } catch (IOException e) {
+                forfeit(player);
+                return;
+            }
+            handle(player);
+        }
+
+        /**
+         * Handle every complete message in the input buffer of a player and keep the start of an incomplete one
+         *
+         * @param player the player whose messages are handled
+         */
+        private void handle(Player player) {
+            ByteBuffer in = player.in;
+            in.flip();
+            while (in.hasRemaining() && !player.closed) {
+                int type = in.get(in.position()) & 0xFF;
+                int length = Connect4Protocol.frameLength(type);
+                if (length < 0) {
+                    forfeit(player);
+                    return;
+                }
+                if (in.remaining() < length)
+                    break;
+                in.get();
+                int payload = length > 1 ? in.get() & 0xFF : 0;
+                // skip the board of a START or JOIN, which is not allowed in a game and forfeits it
+                in.position(in.position() + Math.max(length - 2, 0));
+                play(player, type, payload);
+            }
+            in.compact();
+        }
+
+        /**
+         * Apply one message of a player to its game and pass it on to the opponent
+         *
+         * @param player  the player that sent the message
+         * @param type    the message type
+         * @param payload the payload byte, 0 if the message has none
+         */
+        private void play(Player player, int type, int payload) {
+            Game game = player.game;
+            Player opponent = game.opponent(player);
+            switch (type) {
+                case Connect4Protocol.MOVE:
+                    int column = payload >>> 2;
+                    int color = payload & 3;
+                    if (game.over || !isLegalMove(game.model, game.turn, player.color, column, color)) {
+                        forfeit(player);
+                        return;
+                    }
+                    game.model.play(column, color);
+                    game.turn = opponent.color;
+                    send(opponent, Connect4Protocol.MOVE, payload);
+                    settle(game);
+                    break;
+                case Connect4Protocol.UNDO:
+                    if (payload == player.color) {
+                        // a request that crossed the opponent's move is dropped
+                        if (canUndo(game.model, game.turn, payload))
+                            send(opponent, Connect4Protocol.UNDO, payload);
+                    } else if (payload == opponent.color && canUndo(game.model, game.turn, payload)) {
+                        game.model.undo();
+                        game.turn = opponent.color;
+                        send(opponent, Connect4Protocol.UNDO, payload);
+                        settle(game);
+                    } else {
+                        forfeit(player);
+                    }
+                    break;
+                case Connect4Protocol.RESET:
+                    if (!game.finished) {
+                        // a reset would wipe a game that has no result yet
+                        forfeit(player);
+                        return;
+                    }
+                    game.model.newGameReset();
+                    game.turn = Connect4MoveMessage.YELLOW;
+                    send(opponent, Connect4Protocol.RESET, 0);
+                    settle(game);
+                    break;
+                case Connect4Protocol.PING:
+                    break;
+                default:
+                    // a resignation, or a START that only the server may send
+                    forfeit(player);
+            }
+        }
+
+        /**
+         * Check whether the last change won, drew or reopened the board of a game and keep the game count in step
+         *
+         * @param game the game whose board changed
+         */
+        private void settle(Game game) {
+            boolean finished = game.model.isGameOver();
+            if (game.over || finished == game.finished)
+                return;
+            game.finished = finished;
+            if (finished)
+                games.decrementAndGet();
+            else
+                games.incrementAndGet();
+        }
+
+        /**
+         * Queue a message for a player and write as much as the socket takes
+         *
+         * @param player  the player to send to
+         * @param type    the message type
+         * @param payload the payload byte, ignored for messages without one
+         */
+        private void send(Player player, int type, int payload) {
+            if (player.closed)
+                return;
+            if (player.out.remaining() < Connect4Protocol.MAX_FRAME_BYTES) {
+                // the player stopped reading its messages
+                forfeit(player);
+                return;
+            }
+            player.out.put((byte) type);
+            if (Connect4Protocol.frameLength(type) > 1)
+                player.out.put((byte) payload);
+            flush(player);
+        }
+
+        /**
+         * Write the queued bytes of a player. Whatever the socket does not take is written when the selector reports
+         * the socket writable again
+         *
+         * @param player the player to write to
+         */
+        private void flush(Player player) {
+            if (player.closed)
+                return;
+            ByteBuffer out = player.out;
+            try {
+                out.flip();
+                player.channel.write(out);
+                out.compact();
+            } catch (IOException e) {
+                forfeit(player);
+                return;
+            }
+            if (out.position() == 0 && player.closing)
+                close(player);
+            else if (player.key != null && player.key.isValid())
+                player.key.interestOps(out.position() == 0 ? SelectionKey.OP_READ :
+                        SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+
+        /**
+         * End a game when the server closes and disconnect both players
+         *
+         * @param game the game to end
+         */
+        private void end(Game game) {
+            if (!game.over) {
+                game.over = true;
+                if (!game.finished)
+                    games.decrementAndGet();
+            }
+            close(game.yellow);
+            close(game.red);
+        }
+
+        /**
+         * End the game of a player that left or broke the rules. The opponent is told the player resigned and is
+         * disconnected once that message has been written. A player leaving a game that is already won or drawn
+         * loses nothing, so the opponent is disconnected without a RESIGN
+         *
+         * @param loser the player that loses the game
+         */
+        private void forfeit(Player loser) {
+            close(loser);
+            Game game = loser.game;
+            if (game.over)
+                return;
+            game.over = true;
+            if (!game.finished)
+                games.decrementAndGet();
+            Player winner = game.opponent(loser);
+            if (winner.closed)
+                return;
+            winner.closing = true;
+            if (!game.finished && winner.out.remaining() >= Connect4Protocol.MAX_FRAME_BYTES)
+                Connect4Protocol.putMessage(winner.out, Connect4Protocol.RESIGN, loser.color);
+            flush(winner);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * Connect4SocketTransport.java Authors: Jeff Wiederkehr and Chris Herrera
+ *
+ * This class is the TCP transport between two Connect4Controllers on different machines or processes. The socket
+ * sends every move right away instead of waiting to fill a packet.
+ */
+public class Connect4SocketTransport implements Connect4Transport {
+    static final long CONNECT_RETRY_MILLIS = 2000;
+    private final Socket socket;
+
+    /**
+     * Construct a Connect4SocketTransport on a connected socket
+     *
+     * @param socket the connection to the other end
+     * @throws IOException if the socket options can't be set
+     */
+    public Connect4SocketTransport(Socket socket) throws IOException {
+        this.socket = socket;
+        socket.setTcpNoDelay(true);
+    }
+
+    /**
+     * Wait for one connection on the given port. The listening socket is closed once the other end has connected so
+     * the port can be used for the next game
+     *
+     * @param port the port to listen on
+     * @return - Connect4SocketTransport to the end that connected
+     * @throws IOException if the port can't be opened
+     */
+    public static Connect4SocketTransport accept(int port) throws IOException {
+        try (ServerSocket server = new ServerSocket(port)) {
+            return new Connect4SocketTransport(server.accept());
+        }
+    }
+
+    /**
+     * Connect to the end waiting on the given server and port. A refused connection is tried again for a short while,
+     * so a client started at the same time as its server connects once the server listens instead of failing
+     *
+     * @param server the host name or address of the other end
+     * @param port   the port the other end listens on
+     * @return - Connect4SocketTransport to the other end
+     * @throws IOException if the connection fails
+     */
+    public static Connect4SocketTransport connect(String server, int port) throws IOException {
+        long deadline = System.currentTimeMillis() + CONNECT_RETRY_MILLIS;
+        while (true) {
+            try {
+                return new Connect4SocketTransport(new Socket(server, port));
+            } catch (ConnectException e) {
+                if (System.currentTimeMillis() > deadline)
+                    throw e;
+            }
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted connecting to " + server);
+            }
+        }
+    }
+
+    /**
+     * Returns the stream of bytes sent by the other end
+     *
+     * @return - InputStream of the socket
+     * @throws IOException if the socket is closed
+     */
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return socket.getInputStream();
+    }
+
+    /**
+     * Returns the stream of bytes sent to the other end
+     *
+     * @return - OutputStream of the socket
+     * @throws IOException if the socket is closed
+     */
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        return socket.getOutputStream();
+    }
+
+    /**
+     * Close the socket, which also wakes up a thread blocked reading from it
+     *
+     * @throws IOException if the socket can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
@@ -0,0 +1,254 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Connect4Spectators.java Authors: Jeff Wiederkehr and Chris Herrera
+ *
+ * This class sends the moves of a game to any number of spectators. Every move is encoded once into a log of the
+ * current game, the protocol header followed by the frames of every move since the last reset, and every spectator
+ * has a writer thread that sends the part of the log it has not sent yet straight from that one array. Adding a move
+ * only appends its two bytes and wakes the writers, so the players never wait for a spectator and a spectator that
+ * falls behind catches up with a single write of everything it missed. A spectator that joins during a game gets the
+ * whole log, which brings its board to the current position.
+ *
+ * A spectator only reads. It gets the header, a RESET at the start of every game, a MOVE for every move and an UNDO
+ * for every move that is taken back, the same frames a player gets, so a Connect4Controller can watch with watch or
+ * any client can read it with Connect4Protocol.
+ */
+public class Connect4Spectators implements Closeable {
+    private static final long PLATFORM_STACK_BYTES = 256 * 1024;
+    private final ThreadFactory threads;
+    private final Set<Spectator> spectators = ConcurrentHashMap.newKeySet();
+    // the log of the current game, guarded by this object. Bytes below length never change once written, so a writer
+    // can send them without the lock even if a later move moved the log to a bigger array
+    private byte[] log = new byte[64];
+    private int length = 0;
+    // counts resets so a writer knows when the log started over
+    private int game = 0;
+    private boolean closed = false;
+    private ServerSocket listener;
+
+    /**
+     * Construct a Connect4Spectators without spectators. The writers run on virtual threads when the running Java has
+     * them
+     */
+    public Connect4Spectators() {
+        ThreadFactory factory = Connect4ThreadServer.virtualThreadFactory();
+        threads = factory != null ? factory : runnable -> {
+            Thread thread = new Thread(null, runnable, "Connect4 spectator", PLATFORM_STACK_BYTES);
+            thread.setDaemon(true);
+            return thread;
+        };
+        startLog();
+    }
+
+    /**
+     * Start sending the game to a spectator. The spectator gets the moves of the current game first
+     *
+     * @param transport the connection to the spectator
+     * @throws IOException if the stream of the spectator can't be opened
+     */
+    public void add(Connect4Transport transport) throws IOException {
+        Spectator spectator = new Spectator(transport, transport.getOutputStream());
+        synchronized (this) {
+            if (closed) {
+                spectator.close();
+                return;
+            }
+            spectators.add(spectator);
+        }
+        threads.newThread(() -> writeLog(spectator)).start();
+    }
+
+    /**
+     * Accept spectators on the given port until close is called. Every connection that is accepted is added as a
+     * spectator
+     *
+     * @param port the port to listen on, 0 for any free port
+     * @return - int the port the spectators connect to
+     * @throws IOException if the port can't be opened
+     * @throws IllegalStateException if spectators are already accepted on a port
+     */
+    public synchronized int listen(int port) throws IOException, IllegalStateException {
+        if (listener != null)
+            throw new IllegalStateException("Spectators are already accepted on port " + listener.getLocalPort());
+        ServerSocket server = new ServerSocket(port);
+        listener = server;
+        Thread acceptor = new Thread(() -> acceptLoop(server), "Connect4 spectator acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return server.getLocalPort();
+    }
+
+    /**
+     * Send a move to every spectator
+     *
+     * @param column the column the circle was dropped in
+     * @param color  the color of the circle
+     */
+    public synchronized void broadcastMove(int column, int color) {
+        if (length + Connect4Protocol.MAX_FRAME_BYTES > log.length)
+            log = Arrays.copyOf(log, log.length * 2);
+        ByteBuffer frame = ByteBuffer.wrap(log, length, Connect4Protocol.MAX_FRAME_BYTES);
+        Connect4Protocol.putMove(frame, column, color);
+        length = frame.position();
+        notifyAll();
+    }
+
+    /**
+     * Tell every spectator the last move was taken back. The UNDO is appended to the log like a move, so a spectator
+     * that joins later replays the move and takes it back again
+     *
+     * @param color the color of the move that was taken back
+     */
+    public synchronized void broadcastUndo(int color) {
+        if (length + Connect4Protocol.MAX_FRAME_BYTES > log.length)
+            log = Arrays.copyOf(log, log.length * 2);
+        ByteBuffer frame = ByteBuffer.wrap(log, length, Connect4Protocol.MAX_FRAME_BYTES);
+        Connect4Protocol.putMessage(frame, Connect4Protocol.UNDO, color);
+        length = frame.position();
+        notifyAll();
+    }
+
+    /**
+     * Tell every spectator a new game has started and start a new log
+     */
+    public synchronized void broadcastReset() {
+        game++;
+        log = new byte[log.length];
+        startLog();
+        notifyAll();
+    }
+
+    /**
+     * Returns the number of spectators watching
+     *
+     * @return - int number of open spectator connections
+     */
+    public int getSpectatorCount() {
+        return spectators.size();
+    }
+
+    /**
+     * Stop accepting spectators and close every spectator connection
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            if (listener != null)
+                listener.close();
+        } catch (IOException e) {
+            System.err.println("Something went wrong closing the spectator port: " + e.getMessage());
+        }
+        for (Spectator spectator : spectators)
+            spectator.close();
+    }
+
+    /**
+     * Put the header and a RESET at the start of the log. Called with the lock held or from the constructor
+     */
+    private void startLog() {
+        ByteBuffer start = ByteBuffer.wrap(log);
+        Connect4Protocol.putHeader(start);
+        Connect4Protocol.putMessage(start, Connect4Protocol.RESET, 0);
+        length = start.position();
+    }
+
+    /**
+     * Accept connections and add them as spectators until the port is closed. Runs on the acceptor thread
+     *
+     * @param server the listening socket
+     */
+    private void acceptLoop(ServerSocket server) {
+        while (!server.isClosed()) {
+            try {
+                add(new Connect4SocketTransport(server.accept()));
+            } catch (IOException e) {
+                if (!server.isClosed())
+                    System.err.println("Something went wrong with the network! " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Send the log to a spectator as it grows until the spectator or this object is closed. A reset makes the writer
+     * go on from the RESET at the start of the new log, the header was already sent. Runs on the writer thread of the
+     * spectator
+     *
+     * @param spectator the spectator to write to
+     */
+    private void writeLog(Spectator spectator) {
+        int sent = 0;
+        // -1 until the first write, which starts with the header
+        int sentGame = -1;
+        try {
+            while (true) {
+                byte[] bytes;
+                int end;
+                synchronized (this) {
+                    while (!closed && sentGame == game && sent == length)
+                        wait();
+                    if (closed)
+                        return;
+                    if (sentGame != game) {
+                        sent = sentGame < 0 ? 0 : Connect4Protocol.HEADER_BYTES;
+                        sentGame = game;
+                    }
+                    bytes = log;
+                    end = length;
+                }
+                spectator.out.write(bytes, sent, end - sent);
+                spectator.out.flush();
+                sent = end;
+            }
+        } catch (IOException e) {
+            // the spectator left
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            spectator.close();
+            spectators.remove(spectator);
+        }
+    }
+
+    /**
+     * One connection to a spectator
+     */
+    private static final class Spectator {
+        final Connect4Transport transport;
+        final OutputStream out;
+
+        /**
+         * Construct a Spectator for an open connection
+         *
+         * @param transport the connection to the spectator
+         * @param out       the stream the spectator reads from
+         */
+        Spectator(Connect4Transport transport, OutputStream out) {
+            this.transport = transport;
+            this.out = out;
+        }
+
+        /**
+         * Close the connection, which makes a writer blocked on a slow spectator fail
+         */
+        void close() {
+            try {
+                transport.close();
+            } catch (IOException e) {
+                System.err.println("Something went wrong closing a spectator: " + e.getMessage());
+            }
+        }
+    }
+}
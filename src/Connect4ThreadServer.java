@@ -0,0 +1,439 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Connect4ThreadServer.java Authors: Jeff Wiederkehr and Chris Herrera
+ *
+ * This class hosts many games in one process like Connect4Server, with the same lobby and rules, but every
+ * connection has its own thread that reads its player's messages with blocking Connect4Protocol calls and writes the
+ * checked moves straight to the opponent. On Java 21 and later the threads are virtual threads, so a mostly idle
+ * game costs two parked virtual threads and no OS threads. Older Java versions have no virtual threads and get
+ * platform threads with a small stack instead, which works the same but needs an OS thread per connection. Like
+ * Connect4Server every game is played on the board given to the server, a player that joins on another board is
+ * disconnected, and a game that is won or drawn stops counting and ends without a RESIGN when a player leaves it.
+ */
+public class Connect4ThreadServer implements Closeable {
+    private static final long PLATFORM_STACK_BYTES = 256 * 1024;
+    private final ServerSocket listener;
+    private final ThreadFactory threads;
+    private final boolean virtual;
+    private final Thread acceptor;
+    private final Set<Player> players = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger games = new AtomicInteger();
+    private final Connect4Lobby<Player> lobby = new Connect4Lobby<>();
+    private final Connect4Geometry geometry;
+    private volatile boolean closed = false;
+
+    /**
+     * Construct a Connect4ThreadServer for the standard board listening on the given port and start accepting players
+     *
+     * @param port the port to listen on, 0 for any free port
+     * @throws IOException if the port can't be opened
+     */
+    public Connect4ThreadServer(int port) throws IOException {
+        this(port, Connect4Geometry.STANDARD);
+    }
+
+    /**
+     * Construct a Connect4ThreadServer whose games are played on the given board, listening on the given port, and
+     * start accepting players
+     *
+     * @param port     the port to listen on, 0 for any free port
+     * @param geometry the board of every game
+     * @throws IOException if the port can't be opened
+     */
+    public Connect4ThreadServer(int port, Connect4Geometry geometry) throws IOException {
+        this.geometry = geometry;
+        listener = new ServerSocket(port, 1024);
+        ThreadFactory factory = virtualThreadFactory();
+        virtual = factory != null;
+        threads = virtual ? factory : runnable -> {
+            Thread thread = new Thread(null, runnable, "Connect4 connection", PLATFORM_STACK_BYTES);
+            thread.setDaemon(true);
+            return thread;
+        };
+        acceptor = new Thread(this::acceptLoop, "Connect4 acceptor");
+        acceptor.start();
+    }
+
+    /**
+     * Start a server from the command line and run it until the process is stopped. The number of games and the
+     * lobby are reported every ten seconds
+     *
+     * @param args optional port, and rows, columns and line length of the board
+     */
+    public static void main(String[] args) {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : Connect4Server.DEFAULT_PORT;
+        try {
+            Connect4ThreadServer server = new Connect4ThreadServer(port, Connect4Server.geometry(args, 1));
+            System.out.println("Connect 4 server listening on port " + server.getPort() + " with a " +
+                    (server.isVirtual() ? "virtual" : "platform") + " thread per connection for " +
+                    server.getGeometry() + " games");
+            while (server.acceptor.isAlive()) {
+                server.acceptor.join(Connect4Server.REPORT_MILLIS);
+                System.out.println(server.getGameCount() + " games, " + server.getConnectionCount() +
+                        " connections, " + server.getLobby());
+            }
+        } catch (IOException e) {
+            System.err.println("Something went wrong with the network! " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Something went wrong starting the server! " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns a factory for virtual threads when the running Java has them. It is looked up by reflection so the
+     * game still compiles and runs on Java 17
+     *
+     * @return - ThreadFactory creating virtual threads, or null if there are none
+     */
+    static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class).invoke(builder, "Connect4 connection");
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the port the server listens on
+     *
+     * @return - int port number
+     */
+    public int getPort() {
+        return listener.getLocalPort();
+    }
+
+    /**
+     * Returns the board every game of this server is played on
+     *
+     * @return - Connect4Geometry of the games
+     */
+    public Connect4Geometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Returns whether the connections run on virtual threads
+     *
+     * @return - boolean true for virtual threads, false for platform threads
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Returns the number of games that are being played
+     *
+     * @return - int number of paired games that have not ended
+     */
+    public int getGameCount() {
+        return games.get();
+    }
+
+    /**
+     * Returns the lobby that pairs the players, for its queue depths and wait times
+     *
+     * @return - Connect4Lobby of this server
+     */
+    public Connect4Lobby<?> getLobby() {
+        return lobby;
+    }
+
+    /**
+     * Returns the number of open player connections, including players waiting for an opponent
+     *
+     * @return - int number of open connections
+     */
+    public int getConnectionCount() {
+        return players.size();
+    }
+
+    /**
+     * Stop accepting players and close every connection
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            listener.close();
+            acceptor.join();
+        } catch (IOException e) {
+            System.err.println("Something went wrong closing the server: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Player player : players)
+            player.close();
+    }
+
+    /**
+     * Accept connections and start a thread for each until the server is closed. Runs on the acceptor thread
+     */
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket socket = listener.accept();
+                socket.setTcpNoDelay(true);
+                Player player = new Player(socket);
+                players.add(player);
+                threads.newThread(() -> serve(player)).start();
+            } catch (IOException e) {
+                if (!closed)
+                    System.err.println("Something went wrong with the network! " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Run one connection: wait for the header and the JOIN with the board of the server, get paired through the lobby
+     * and pass on the player's messages until the connection ends. Runs on the thread of the connection
+     *
+     * @param player the player of the connection
+     */
+    private void serve(Player player) {
+        try {
+            player.protocol = new Connect4Protocol(player.socket.getInputStream(), player.socket.getOutputStream());
+            int type;
+            while ((type = player.protocol.read()) == Connect4Protocol.PING) {
+                // pings are allowed before the JOIN
+            }
+            // a player on another board is not paired
+            if (type != Connect4Protocol.JOIN || !geometry.equals(player.protocol.getGeometry()))
+                return;
+            player.queue = player.protocol.getColor();
+            pair(player);
+            while (!player.closed.get())
+                play(player, player.protocol.read());
+        } catch (IOException e) {
+            // the player left or broke the protocol
+        } finally {
+            leave(player);
+        }
+    }
+
+    /**
+     * Make a player wait in its lobby queue or start a game with the player that waited longest in it. Both players
+     * of a new game are told their color
+     *
+     * @param player the player that has joined
+     * @throws IOException if the player can't be told its color
+     */
+    private void pair(Player player) throws IOException {
+        Player opponent;
+        // a player that disconnected an instant ago may not have left its queue yet
+        do {
+            opponent = lobby.join(player.queue, player);
+            if (opponent == null)
+                return;
+        } while (opponent.closed.get());
+        Game game = new Game(geometry, opponent, player);
+        games.incrementAndGet();
+        try {
+            game.yellow.protocol.writeStart(Connect4MoveMessage.YELLOW, geometry);
+        } catch (IOException e) {
+            forfeit(game.yellow);
+        }
+        player.protocol.writeStart(Connect4MoveMessage.RED, geometry);
+    }
+
+    /**
+     * Apply one message of a player to its game and pass it on to the opponent
+     *
+     * @param player the player that sent the message
+     * @param type   the message type
+     * @throws IOException if the message can't be passed on
+     */
+    private void play(Player player, int type) throws IOException {
+        if (type == Connect4Protocol.PING)
+            return;
+        Game game = player.game;
+        if (game == null) {
+            // only pings are allowed before the game starts
+            player.close();
+            return;
+        }
+        synchronized (game) {
+            Player opponent = game.opponent(player);
+            if (game.over) {
+                player.close();
+            } else if (type == Connect4Protocol.MOVE && Connect4Server.isLegalMove(game.model, game.turn,
+                    player.color, player.protocol.getColumn(), player.protocol.getColor())) {
+                game.model.play(player.protocol.getColumn(), player.color);
+                game.turn = opponent.color;
+                opponent.protocol.writeMove(player.protocol.getColumn(), player.color);
+                settle(game);
+            } else if (type == Connect4Protocol.UNDO && player.protocol.getColor() == player.color) {
+                // a request that crossed the opponent's move is dropped
+                if (Connect4Server.canUndo(game.model, game.turn, player.color))
+                    opponent.protocol.writeUndo(player.color);
+            } else if (type == Connect4Protocol.UNDO && player.protocol.getColor() == opponent.color &&
+                    Connect4Server.canUndo(game.model, game.turn, opponent.color)) {
+                game.model.undo();
+                game.turn = opponent.color;
+                opponent.protocol.writeUndo(opponent.color);
+                settle(game);
+            } else if (type == Connect4Protocol.RESET && game.finished) {
+                game.model.newGameReset();
+                game.turn = Connect4MoveMessage.YELLOW;
+                opponent.protocol.writeReset();
+                settle(game);
+            } else {
+                // an illegal move, a reset of a game without a result, a resignation, or a START that only the
+                // server may send
+                forfeit(player);
+            }
+        }
+    }
+
+    /**
+     * Check whether the last change won, drew or reopened the board of a game and keep the game count in step. Called
+     * while holding the game
+     *
+     * @param game the game whose board changed
+     */
+    private void settle(Game game) {
+        boolean finished = game.model.isGameOver();
+        if (finished == game.finished)
+            return;
+        game.finished = finished;
+        if (finished)
+            games.decrementAndGet();
+        else
+            games.incrementAndGet();
+    }
+
+    /**
+     * Clean up after a connection ended. A player waiting for an opponent leaves the lobby, a player in a game loses
+     * it
+     *
+     * @param player the player whose connection ended
+     */
+    private void leave(Player player) {
+        if (player.queue >= 0)
+            lobby.leave(player.queue, player);
+        if (player.game != null)
+            forfeit(player);
+        player.close();
+        players.remove(player);
+    }
+
+    /**
+     * End the game of a player that left or broke the rules. The opponent is told the player resigned and both
+     * connections are closed, which ends the thread of the opponent as well. A player leaving a game that is already
+     * won or drawn loses nothing, so the opponent is disconnected without a RESIGN
+     *
+     * @param loser the player that loses the game
+     */
+    private void forfeit(Player loser) {
+        Game game = loser.game;
+        boolean finished;
+        synchronized (game) {
+            if (game.over)
+                return;
+            game.over = true;
+            finished = game.finished;
+        }
+        if (!finished)
+            games.decrementAndGet();
+        loser.close();
+        Player winner = game.opponent(loser);
+        try {
+            if (!finished)
+                winner.protocol.writeResign(loser.color);
+        } catch (IOException e) {
+            // the winner is gone as well
+        }
+        winner.close();
+    }
+
+    /**
+     * One connection to a player
+     */
+    private static final class Player {
+        final Socket socket;
+        final AtomicBoolean closed = new AtomicBoolean();
+        // set by the connection thread before the player can be paired
+        volatile Connect4Protocol protocol;
+        volatile Game game;
+        volatile int color;
+        // the lobby queue from the JOIN message, -1 until it has arrived
+        volatile int queue = -1;
+
+        /**
+         * Construct a Player for an accepted connection
+         *
+         * @param socket the connection to the player
+         */
+        Player(Socket socket) {
+            this.socket = socket;
+        }
+
+        /**
+         * Close the connection once, which wakes up its thread if it is reading
+         */
+        void close() {
+            if (closed.compareAndSet(false, true)) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    System.err.println("Something went wrong closing a connection: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * A game between two players with the board that their moves are checked against. The fields are guarded by
+     * the game itself
+     */
+    private static final class Game {
+        final Connect4Model model;
+        final Player yellow;
+        final Player red;
+        int turn = Connect4MoveMessage.YELLOW;
+        // set when a player left, the players are being disconnected
+        boolean over = false;
+        // set while the board shows a win or a draw, until a RESET or an undo opens it again
+        boolean finished = false;
+
+        /**
+         * Construct a Game between two players
+         *
+         * @param geometry the board of the game
+         * @param yellow   the player that moves first
+         * @param red      the other player
+         */
+        Game(Connect4Geometry geometry, Player yellow, Player red) {
+            model = new Connect4Model(geometry);
+            this.yellow = yellow;
+            this.red = red;
+            yellow.color = Connect4MoveMessage.YELLOW;
+            red.color = Connect4MoveMessage.RED;
+            yellow.game = this;
+            red.game = this;
+        }
+
+        /**
+         * Returns the opponent of a player of this game
+         *
+         * @param player one of the players
+         * @return - Player the other player
+         */
+        Player opponent(Player player) {
+            return player == yellow ? red : yellow;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Connect4Tournament.java Authors: Jeff Wiederkehr and Chris Herrera
+ *
+ * This class plays games between two computer players without the GUI. Every thread of the pool plays whole games on
+ * its own Connect4Model with its own engines and no listeners, pulling game numbers from a shared counter until every
+ * game is played. The players switch colors every game so neither always moves first. At the end it prints how many
+ * games were played per second, the win and draw rates and percentiles of the time taken per move.
+ *
+ * A player is given as random, which drops circles into random columns, search:depth for the alpha-beta search or
+ * mcts:playouts for Monte Carlo Tree Search. The number after the colon is optional.
+ *
+ * The search and Monte Carlo Tree Search with one thread always play the same move in the same position, so every
+ * game starts with a few random moves to make the games differ. The random moves of a game, and the moves of a
+ * random player, come from a generator seeded with the seed of the tournament plus the number of the game. The seed
+ * is printed with the report, and running the tournament again with that seed plays every game the same way.
+ *
+ * Usage: java Connect4Tournament [games] [threads] [player one] [player two] [seed]
+ */
+public class Connect4Tournament {
+    public static final int DEFAULT_GAMES = 1000;
+    // random moves at the start of every game, few enough that nobody can win with them on the standard board
+    static final int OPENING_PLIES = 4;
+    private final int games;
+    private final int threads;
+    private final String[] players;
+    private final long seed;
+    private final AtomicInteger nextGame = new AtomicInteger();
+    // wins of player one, wins of player two and draws
+    private final AtomicInteger[] results = {new AtomicInteger(), new AtomicInteger(), new AtomicInteger()};
+
+    /**
+     * Construct a tournament with a seed taken from the clock
+     *
+     * @param games     number of games to play
+     * @param threads   number of games played at the same time
+     * @param playerOne engine of the first player
+     * @param playerTwo engine of the second player
+     * @throws IllegalArgumentException if a player is not a known engine
+     */
+    public Connect4Tournament(int games, int threads, String playerOne, String playerTwo)
+            throws IllegalArgumentException {
+        this(games, threads, playerOne, playerTwo, System.nanoTime());
+    }
+
+    /**
+     * Construct a tournament whose random moves come from the given seed
+     *
+     * @param games     number of games to play
+     * @param threads   number of games played at the same time
+     * @param playerOne engine of the first player
+     * @param playerTwo engine of the second player
+     * @param seed      seed of the tournament, game n uses seed + n
+     * @throws IllegalArgumentException if a player is not a known engine
+     */
+    public Connect4Tournament(int games, int threads, String playerOne, String playerTwo, long seed)
+            throws IllegalArgumentException {
+        this.games = games;
+        this.threads = threads;
+        this.players = new String[]{playerOne, playerTwo};
+        this.seed = seed;
+        createEngine(playerOne);
+        createEngine(playerTwo);
+    }
+
+    /**
+     * Run a tournament from the command line and print the report
+     *
+     * @param args games, threads, the two players and the seed, every argument is optional
+     * @throws InterruptedException if the tournament is interrupted
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_GAMES;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        String playerOne = args.length > 2 ? args[2] : "search";
+        String playerTwo = args.length > 3 ? args[3] : "random";
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : System.nanoTime();
+        new Connect4Tournament(games, threads, playerOne, playerTwo, seed).run();
+    }
+
+    /**
+     * Play every game on the thread pool and print the report
+     *
+     * @throws InterruptedException if the tournament is interrupted
+     */
+    public void run() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<long[][]>> running = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < threads; i++)
+            running.add(pool.submit(this::playGames));
+        long[][] latencies = {new long[0], new long[0]};
+        try {
+            for (Future<long[][]> future : running) {
+                long[][] worker = future.get();
+                for (int player = 0; player < 2; player++)
+                    latencies[player] = concat(latencies[player], worker[player]);
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Tournament game failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d games in %.2f s, %.1f games/s on %d threads%n", games, seconds, games / seconds,
+                threads);
+        for (int player = 0; player < 2; player++)
+            System.out.printf("%-12s wins %5.1f%%  move latency %s%n", players[player],
+                    100.0 * results[player].get() / games, percentiles(latencies[player]));
+        System.out.printf("%-12s      %5.1f%%%n", "draws", 100.0 * results[2].get() / games);
+        System.out.println("seed " + seed + ", game n opens with " + OPENING_PLIES + " random moves from seed + n");
+    }
+
+    /**
+     * Play games until every game of the tournament has been taken. Runs on one thread of the pool
+     *
+     * @return - long[][] the time of every move in nanoseconds, one array per player
+     */
+    private long[][] playGames() {
+        Connect4Model model = new Connect4Model();
+        Connect4Engine[] engines = {createEngine(players[0]), createEngine(players[1])};
+        long[][] latencies = {new long[1024], new long[1024]};
+        int[] moves = new int[2];
+        int game;
+        while ((game = nextGame.getAndIncrement()) < games) {
+            model.newGameReset();
+            Random random = new Random(seed + game);
+            for (Connect4Engine engine : engines)
+                if (engine instanceof Connect4Search)
+                    ((Connect4Search) engine).clear();
+            // player one is yellow in even games and red in odd games
+            int yellow = game & 1;
+            int player = yellow;
+            int color = Connect4MoveMessage.YELLOW;
+            for (int ply = 0; ply < OPENING_PLIES; ply++) {
+                model.play(randomColumn(model, random), color);
+                player = 1 - player;
+                color = 3 - color;
+            }
+            while (!model.isGameOver()) {
+                long begin = System.nanoTime();
+                if (engines[player] == null)
+                    model.play(randomColumn(model, random), color);
+                else
+                    model.play(engines[player].bestMove(model, color), color);
+                long time = System.nanoTime() - begin;
+                if (moves[player] == latencies[player].length)
+                    latencies[player] = Arrays.copyOf(latencies[player], moves[player] * 2);
+                latencies[player][moves[player]++] = time;
+                player = 1 - player;
+                color = 3 - color;
+            }
+            int result = model.getGameResult();
+            if (result == Connect4Model.DRAW)
+                results[2].incrementAndGet();
+            else
+                results[result == Connect4MoveMessage.YELLOW ? yellow : 1 - yellow].incrementAndGet();
+        }
+        return new long[][]{Arrays.copyOf(latencies[0], moves[0]), Arrays.copyOf(latencies[1], moves[1])};
+    }
+
+    /**
+     * Pick a random column that is not full, the same way updateCircleAI does but from the generator of the game
+     *
+     * @param model  the game to play in, with at least one column that is not full
+     * @param random the generator of the game
+     * @return - int column to play
+     */
+    private static int randomColumn(Connect4Model model, Random random) {
+        int column = random.nextInt(model.getColumns());
+        while (!model.canPlay(column))
+            column = (column + 1) % model.getColumns();
+        return column;
+    }
+
+    /**
+     * Create the engine for a player. Every thread creates its own engines since they keep state between moves
+     *
+     * @param player random, search:depth or mcts:playouts
+     * @return - Connect4Engine for the player or null for random, which plays random columns
+     * @throws IllegalArgumentException if the player is not a known engine
+     */
+    private static Connect4Engine createEngine(String player) throws IllegalArgumentException {
+        String[] parts = player.split(":");
+        switch (parts[0]) {
+            case "random":
+                return null;
+            case "search":
+                int depth = parts.length > 1 ? Integer.parseInt(parts[1]) : Connect4Search.DEFAULT_DEPTH;
+                return new Connect4Search(depth, new Connect4TranspositionTable(18));
+            case "mcts":
+                Connect4MCTS mcts = new Connect4MCTS();
+                if (parts.length > 1)
+                    mcts.setPlayouts(Integer.parseInt(parts[1]));
+                return mcts;
+            default:
+                throw new IllegalArgumentException("Unknown player " + player
+                        + ", use random, search:depth or mcts:playouts");
+        }
+    }
+
+    /**
+     * Format the 50th, 90th and 99th percentile and the maximum of the given times
+     *
+     * @param times move times in nanoseconds
+     * @return - String with the percentiles in microseconds
+     */
+    static String percentiles(long[] times) {
+        if (times.length == 0)
+            return "no moves";
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        return String.format("p50 %.1f us  p90 %.1f us  p99 %.1f us  max %.1f us", percentile(sorted, 50) / 1e3,
+                percentile(sorted, 90) / 1e3, percentile(sorted, 99) / 1e3, sorted[sorted.length - 1] / 1e3);
+    }
+
+    /**
+     * Returns the given percentile of sorted times by the nearest rank
+     *
+     * @param sorted     times sorted from low to high
+     * @param percentile the percentile to find, between 1 and 100
+     * @return - long the time at that percentile
+     */
+    private static long percentile(long[] sorted, int percentile) {
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * Join two arrays into a new one
+     *
+     * @param first  the first array
+     * @param second the array to add after it
+     * @return - long[] holding both arrays
+     */
+    static long[] concat(long[] first, long[] second) {
+        long[] joined = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, joined, first.length, second.length);
+        return joined;
+    }
+}
@@ -0,0 +1,30 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Connect4Transport.java Authors: Jeff Wiederkehr and Chris Herrera
+ *
+ * This interface is implemented by every connection a Connect4Controller can play over. A transport is one open,
+ * ordered and reliable byte stream in each direction, the controller speaks Connect4Protocol on top of it. Closing
+ * the transport ends both directions, the other end reads the end of the stream.
+ */
+public interface Connect4Transport extends Closeable {
+
+    /**
+     * Returns the stream of bytes sent by the other end
+     *
+     * @return - InputStream to read from
+     * @throws IOException if the transport is closed
+     */
+    InputStream getInputStream() throws IOException;
+
+    /**
+     * Returns the stream of bytes sent to the other end. Every write is passed on when the stream is flushed
+     *
+     * @return - OutputStream to write to
+     * @throws IOException if the transport is closed
+     */
+    OutputStream getOutputStream() throws IOException;
+}
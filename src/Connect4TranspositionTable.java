@@ -0,0 +1,162 @@
+import java.util.Arrays;
+
+/**
+ * Connect4TranspositionTable.java Authors: Jeff Wiederkehr and Chris Herrera
+ *
+ * This class is a fixed size transposition table for the computer player. The search reaches the same position
+ * through many move orders, so the table remembers the score, how deep it was searched, whether the score is exact or
+ * only a bound, and the best move found. Entries are packed into two long arrays, one holding the position keys and
+ * one holding the data, so storing a position never allocates.
+ *
+ * Each slot holds one position. A new entry replaces the old one when the slot is empty, holds the same position, was
+ * written by an older search, or was searched less deep than the new entry.
+ *
+ * The table is shared by every thread of a parallel search without locks. The key array holds the key XOR the data,
+ * so if two threads write the same slot at once and a reader sees the key of one write with the data of the other,
+ * the XOR no longer matches the key and the entry is treated as missing.
+ */
+public class Connect4TranspositionTable {
+    public static final int DEFAULT_SIZE_BITS = 20;
+    public static final int EXACT = 1;
+    public static final int LOWER_BOUND = 2;
+    public static final int UPPER_BOUND = 3;
+    public static final int NO_MOVE = 63;
+    // layout of a data entry from the lowest bit: 16 bits score, 9 bits depth, 2 bits bound, 6 bits move, 8 bits age.
+    // A depth goes up to the 256 cells of the largest board
+    private static final int DEPTH_SHIFT = 16;
+    private static final int BOUND_SHIFT = 25;
+    private static final int MOVE_SHIFT = 27;
+    private static final int AGE_SHIFT = 33;
+    private final long[] keys;
+    private final long[] data;
+    private final int shift;
+    private int age = 0;
+
+    /**
+     * Construct a table with the default number of slots
+     */
+    public Connect4TranspositionTable() {
+        this(DEFAULT_SIZE_BITS);
+    }
+
+    /**
+     * Construct a table with 2 to the power of sizeBits slots. Every slot uses 16 bytes
+     *
+     * @param sizeBits base 2 logarithm of the number of slots, between 1 and 30
+     * @throws IllegalArgumentException if the size is out of range
+     */
+    public Connect4TranspositionTable(int sizeBits) throws IllegalArgumentException {
+        if (sizeBits < 1 || sizeBits > 30)
+            throw new IllegalArgumentException("Table size bits must be between 1 and 30");
+        keys = new long[1 << sizeBits];
+        data = new long[1 << sizeBits];
+        shift = 64 - sizeBits;
+    }
+
+    /**
+     * Start a new search. Entries from older searches are kept for lookups but are the first to be replaced
+     */
+    public void newSearch() {
+        age = (age + 1) & 0xFF;
+    }
+
+    /**
+     * Empty every slot of the table
+     */
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(data, 0L);
+    }
+
+    /**
+     * Look up a position
+     *
+     * @param key the position key, never 0
+     * @return - long the packed entry to read with score, depth, bound and move, or 0 if the position is not stored
+     */
+    public long probe(long key) {
+        int index = index(key);
+        long entry = data[index];
+        return (keys[index] ^ entry) == key ? entry : 0L;
+    }
+
+    /**
+     * Store the result of searching a position if the replacement policy allows it
+     *
+     * @param key   the position key, never 0
+     * @param score score of the position from the point of view of the color to move
+     * @param depth number of moves the position was searched, 0 to 511
+     * @param bound EXACT, LOWER_BOUND or UPPER_BOUND
+     * @param move  best column found or NO_MOVE
+     */
+    public void store(long key, int score, int depth, int bound, int move) {
+        int index = index(key);
+        long old = data[index];
+        if (old != 0 && (keys[index] ^ old) != key && age(old) == age && depth(old) > depth)
+            return;
+        long entry = (score & 0xFFFFL) | ((long) depth << DEPTH_SHIFT) | ((long) bound << BOUND_SHIFT)
+                | ((long) move << MOVE_SHIFT) | ((long) age << AGE_SHIFT);
+        keys[index] = key ^ entry;
+        data[index] = entry;
+    }
+
+    /**
+     * Returns the score of a packed entry
+     *
+     * @param entry value returned by probe
+     * @return - int stored score
+     */
+    public static int score(long entry) {
+        return (short) entry;
+    }
+
+    /**
+     * Returns the search depth of a packed entry
+     *
+     * @param entry value returned by probe
+     * @return - int number of moves the position was searched
+     */
+    public static int depth(long entry) {
+        return (int) (entry >>> DEPTH_SHIFT) & 0x1FF;
+    }
+
+    /**
+     * Returns the kind of score of a packed entry
+     *
+     * @param entry value returned by probe
+     * @return - int EXACT, LOWER_BOUND or UPPER_BOUND
+     */
+    public static int bound(long entry) {
+        return (int) (entry >>> BOUND_SHIFT) & 0x3;
+    }
+
+    /**
+     * Returns the best move of a packed entry
+     *
+     * @param entry value returned by probe
+     * @return - int column of the best move or NO_MOVE
+     */
+    public static int move(long entry) {
+        return (int) (entry >>> MOVE_SHIFT) & 0x3F;
+    }
+
+    /**
+     * Returns the search that wrote a packed entry
+     *
+     * @param entry value returned by probe
+     * @return - int age of the search that stored the entry
+     */
+    private static int age(long entry) {
+        return (int) (entry >>> AGE_SHIFT) & 0xFF;
+    }
+
+    /**
+     * Spread the bits of the key with a multiplicative hash and keep the top bits as the slot index
+     *
+     * @param key the position key
+     * @return - int slot of the position
+     */
+    private int index(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+}
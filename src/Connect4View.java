@@ -1,3 +1,4 @@
+import javafx.animation.AnimationTimer;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
 import javafx.application.Application;
@@ -14,24 +15,39 @@ import javafx.scene.shape.Circle;
 import javafx.stage.Stage;
 import javafx.util.Duration;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Observable;
-import java.util.Observer;
 
 /**
  * Connect4View.java Authors: Jeff Wiederkehr and Chris Herrera
  *
  * This class implements the GUI view for the Connect 4 Game. The class has two separate modes of operation where either
  * the current active user is a player or when their is a computer simulated move
+ *
+ * The changes of the model are not drawn when the model makes them. Every change only records the new color of its
+ * cell, and once per animation pulse the cells that changed since the last pulse are filled in one pass, so a fast
+ * game between engines or a replay draws each cell once per frame however many moves were made in between and never
+ * holds up the thread that plays. The game over and error pop ups are shown without waiting for them to be closed.
  */
-public class Connect4View extends Application implements Observer {
+public class Connect4View extends Application implements Connect4Listener {
     private GridPane grid = new GridPane();
     private NetworkWindow networkWindow;
     private Connect4Controller controller;
-    private static final int ROWS = 6;
-    private static final int COLUMNS = 7;
+    private Connect4Journal journal;
+    private Stage stage;
     private Map<compoundKey, Circle> nodeMap = new HashMap<>();
+    // changes of the model drawn on the next pulse, guarded by the view. Every cell is row * pendingColumns + column
+    // and holds its new color + 1 or 0 if it has not changed, and dirtyCells lists the changed cells
+    private int pendingColumns;
+    private int[] pendingColors;
+    private int[] dirtyCells;
+    private int dirtyCount;
+    private boolean resetPending;
+    private boolean enablePending;
+    private int resultPending = Connect4Model.IN_PROGRESS;
+    // reused for every game over so a fast series of games does not open a pile of pop ups
+    private Alert gameOverAlert;
 
     /**
      * Launch the GUI for the game
@@ -57,10 +73,14 @@ public class Connect4View extends Application implements Observer {
      * @param stage the main Stage to set up
      */
     public void startGame(Stage stage) {
+        this.stage = stage;
         // set model and controller
         Connect4Model model = new Connect4Model();
         controller = new Connect4Controller(model);
-        model.addObserver(this);
+        clearPending();
+        model.addListener(this);
+        journal = Connect4Journal.openDefault();
+        model.setJournal(journal);
 
         networkWindow = new NetworkWindow(controller);
         BorderPane window = new BorderPane();
@@ -76,64 +96,89 @@ public class Connect4View extends Application implements Observer {
         stage.setScene(scene);
         stage.setTitle("Connect 4");
         stage.show();
-        Timeline threeSecondsEvent = new Timeline(new KeyFrame(Duration.seconds(3), event -> {
+        // the computer spends its move time thinking in the background, this only checks when to start
+        Timeline computerTurnCheck = new Timeline(new KeyFrame(Duration.millis(100), event -> {
             if (!networkWindow.isHuman() && controller.getCanClick() && !controller.isGameOver()) {
                 gameLoopAI();
             }
         }));
-        threeSecondsEvent.setCycleCount(Timeline.INDEFINITE);
-        threeSecondsEvent.play();
+        computerTurnCheck.setCycleCount(Timeline.INDEFINITE);
+        computerTurnCheck.play();
+        new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                drawPending();
+            }
+        }.start();
+    }
+
+    /**
+     * Write the journal of the games to the disk when the GUI is closed
+     */
+    @Override
+    public void stop() {
+        if (journal != null)
+            journal.close();
     }
 
     /**
-     * This method performs a game move by the computer. The method first calls the controller to execute a turn and
-     * then sets the turn to false in the controller
+     * This method performs a game move by the computer. The method first sets the turn to false in the controller so
+     * the move is only started once and then starts the search, which plays the move when its time is up
      */
     private void gameLoopAI() {
-        controller.computerTurn();
         controller.setTurn(false);
+        controller.startComputerTurn();
     }
 
     /**
-     * Create the MenuBar to hold the New Game option
+     * Create the MenuBar to hold the New Game and Undo Move options
      *
      * @param stage the main Stage to set up
-     * @return menuBar containing the New Game option which will open the Network Setup box
+     * @return menuBar containing the New Game option which will open the Network Setup box and the Undo Move option
+     * which takes back our last move
      */
     private MenuBar createMenu(Stage stage) {
         MenuBar menuBar = new MenuBar();
         Menu menu = new Menu("File");
         MenuItem newGame = new MenuItem("New Game");
         newGame.setOnAction(actionEvent -> networkWindow.showAndWait());
-        menu.getItems().add(newGame);
+        MenuItem undo = new MenuItem("Undo Move");
+        undo.setOnAction(actionEvent -> controller.undo());
+        menu.getItems().addAll(newGame, undo);
         menuBar.getMenus().add(menu);
         return menuBar;
     }
 
     /**
-     * This method sets the dimensions for the stage
+     * This method sets the dimensions for the stage, every circle takes 48 pixels in both directions plus the margin,
+     * title and menu bar
      *
      * @param stage - Stage for display
      */
     private void setStage(Stage stage) {
-        stage.setMaxWidth(344);
-        stage.setMaxHeight(360);
-        stage.setHeight(360);
-        stage.setWidth(344);
+        int width = controller.getColumns() * 48 + 8;
+        int height = controller.getRows() * 48 + 72;
+        stage.setMaxWidth(width);
+        stage.setMaxHeight(height);
+        stage.setHeight(height);
+        stage.setWidth(width);
     }
 
     /**
-     * This method creates the 7 columns in the game board, adds the circle elements to a map for updates and adds event
+     * This method creates the columns in the game board, adds the circle elements to a map for updates and adds event
      * handlers to each column for user click events. The click events first check that it is the users turn and then
      * notify the controller of the move and set the turn to false. If the column is full an exception is thrown from
-     * the model through the controller and we use the message from the exception in our popup alert
+     * the model through the controller and we use the message from the exception in our popup alert. The old board is
+     * removed first, so the grid always has the size of the board of the controller
      */
     private void setGrid() {
+        grid.getChildren().clear();
+        nodeMap.clear();
         grid.setHgap(8);
         grid.setVgap(8);
-        for (int i = 0; i < COLUMNS; i++) {
+        for (int i = 0; i < controller.getColumns(); i++) {
             VBox vBox = new VBox();
-            for (int j = 0; j < ROWS; j++) {
+            for (int j = 0; j < controller.getRows(); j++) {
                 Circle circle = new Circle();
                 circle.setRadius(20);
                 circle.setFill(Color.WHITE);
@@ -164,46 +209,135 @@ public class Connect4View extends Application implements Observer {
     }
 
     /**
-     * This method receives an update from the model every time the model changes. The model passes a
-     * Connect4MoveMessage object which contains information for which
+     * This method receives every move from the model and records the new color of its circle for the next pulse. A
+     * move with color 0 was taken back, its circle turns white again and the board can be clicked again if the game
+     * had ended
      *
-     * @param o   The model
-     * @param arg The Connect4MoveMessage representing the change that was made in the model
+     * @param row    the row of the circle, counted from the top
+     * @param column the column of the circle
+     * @param color  the color of the circle 1 = yellow, 2 = red, 0 = white
      */
     @Override
-    public void update(Observable o, Object arg) {
-    	if (arg instanceof String) {
-    		if ( ((String) arg).equals("reset")) {
-    			setGrid();
-    		}
-    	}
-    	else {
-	        Connect4MoveMessage message = (Connect4MoveMessage) arg;
-	        int row = message.getRow();
-	        int column = message.getColumn();
-	        int color = message.getColor();
-	        if (controller.isGameOver()) {
-	            popupEventAlert("You Won", Alert.AlertType.CONFIRMATION);
-	            grid.getChildren().forEach(col -> col.setDisable(true));
-	        }
-	        Paint paint = color == 1 ? Color.YELLOW : Color.RED;
-	        compoundKey key = new compoundKey(row, column);
-	        Circle updateCircle = nodeMap.get(key);
-	        updateCircle.setFill(paint);
-    	}
-    }
-
-    /**
-     * Create a pop up event alert with the given message and alert type
+    public synchronized void onMove(int row, int column, int color) {
+        int cell = row * pendingColumns + column;
+        if (pendingColors[cell] == 0)
+            dirtyCells[dirtyCount++] = cell;
+        pendingColors[cell] = color + 1;
+        if (color == 0) {
+            enablePending = true;
+            resultPending = Connect4Model.IN_PROGRESS;
+        }
+    }
+
+    /**
+     * This method receives the reset of the model. The changes that were not drawn yet are dropped and the next pulse
+     * builds a new empty board of the size of the new game
+     */
+    @Override
+    public synchronized void onReset() {
+        clearPending();
+        resetPending = true;
+    }
+
+    /**
+     * This method receives the end of the game from the model. The next pulse shows who won and stops the board from
+     * being clicked
+     *
+     * @param result the color of the winner or Connect4Model.DRAW
+     */
+    @Override
+    public synchronized void onGameOver(int result) {
+        resultPending = result;
+        enablePending = false;
+    }
+
+    /**
+     * Forget the changes that were not drawn and size the pending cells for the board of the controller
+     */
+    private void clearPending() {
+        int cells = controller.getRows() * controller.getColumns();
+        if (pendingColors == null || pendingColors.length != cells) {
+            pendingColors = new int[cells];
+            dirtyCells = new int[cells];
+        } else {
+            Arrays.fill(pendingColors, 0);
+        }
+        pendingColumns = controller.getColumns();
+        dirtyCount = 0;
+        enablePending = false;
+        resultPending = Connect4Model.IN_PROGRESS;
+    }
+
+    /**
+     * Draw everything the model changed since the last pulse in one pass: a new board after a reset, the new color of
+     * every changed circle, and whether the board can be clicked. The game over pop up is shown without waiting for
+     * it. Runs on every animation pulse and does nothing when nothing changed
+     */
+    private synchronized void drawPending() {
+        if (!resetPending && dirtyCount == 0 && !enablePending && resultPending == Connect4Model.IN_PROGRESS)
+            return;
+        if (resetPending) {
+            setGrid();
+            setStage(stage);
+            resetPending = false;
+        }
+        for (int i = 0; i < dirtyCount; i++) {
+            int cell = dirtyCells[i];
+            int color = pendingColors[cell] - 1;
+            pendingColors[cell] = 0;
+            Paint paint = color == 0 ? Color.WHITE : color == 1 ? Color.YELLOW : Color.RED;
+            nodeMap.get(new compoundKey(cell / pendingColumns, cell % pendingColumns)).setFill(paint);
+        }
+        dirtyCount = 0;
+        if (enablePending) {
+            grid.getChildren().forEach(col -> col.setDisable(false));
+            enablePending = false;
+        }
+        if (resultPending != Connect4Model.IN_PROGRESS) {
+            grid.getChildren().forEach(col -> col.setDisable(true));
+            showGameOver(resultPending);
+            resultPending = Connect4Model.IN_PROGRESS;
+        }
+    }
+
+    /**
+     * Show who won in the game over pop up without waiting for it to be closed. A pop up that is still open from an
+     * earlier game is reused
+     *
+     * @param result the color of the winner or Connect4Model.DRAW
+     */
+    private void showGameOver(int result) {
+        if (gameOverAlert == null)
+            gameOverAlert = new Alert(Alert.AlertType.CONFIRMATION);
+        gameOverAlert.setContentText(gameOverMessage(result));
+        if (!gameOverAlert.isShowing())
+            gameOverAlert.show();
+    }
+
+    /**
+     * Build the message shown when the game is over
+     *
+     * @param result the result of the game, either the color of the winner or Connect4Model.DRAW
+     * @return the text to place in the game over pop up
+     */
+    private String gameOverMessage(int result) {
+        if (result == Connect4Model.DRAW)
+            return "Draw";
+        return (result == Connect4MoveMessage.YELLOW ? "Yellow" : "Red") + " Won";
+    }
+
+    /**
+     * Create a pop up event alert with the given message and alert type. The alert is shown without waiting for it to
+     * be closed
      *
      * @param message   The message to place in the pop up
-     * @param alertType The type of alert to use for the pop up (ERROR if column full or CONFIRMATION if game over)
+     * @param alertType The type of alert to use for the pop up (ERROR if column full)
      */
     private void popupEventAlert(String message, Alert.AlertType alertType) {
         Alert alert = new Alert(alertType);
         alert.setAlertType(alertType);
         alert.setContentText(message);
-        alert.showAndWait();
+        alert.show();
     }
 
 }
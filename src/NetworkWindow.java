@@ -21,8 +21,12 @@ public class NetworkWindow extends Stage {
 
     private boolean isServer;
     private boolean isHuman;
+    private boolean isMCTS;
     private String server;
     private String port;
+    private String rows = "6";
+    private String columns = "7";
+    private String connect = "4";
     private boolean canClick;
     private Connect4Controller controller;
     private VBox networkBox = new VBox();
@@ -45,7 +49,7 @@ public class NetworkWindow extends Stage {
 
     /**
      * This is the base method that sets the different fields and subregions of the network window. It divides the
-     * window into 4 section representing horizontal rows in the window
+     * window into 5 section representing horizontal rows in the window
      */
     private void setNetworkWindow() {
         BorderPane borderPane = new BorderPane();
@@ -55,6 +59,7 @@ public class NetworkWindow extends Stage {
         setCreateRow();
         setPlayAsRow();
         setServerRow();
+        setBoardRow();
         createButtonRow();
         borderPane.setCenter(networkBox);
         this.setScene(scene);
@@ -87,8 +92,9 @@ public class NetworkWindow extends Stage {
     }
 
     /**
-     * This method sets the Play as row of the network window. This row contains a label and two radio buttons. This
-     * implementation is identical to the above setCreateBox but instead of changing isServer it changes isHuman
+     * This method sets the Play as row of the network window. This row contains a label and three radio buttons. This
+     * implementation is identical to the above setCreateBox but instead of changing isServer it changes isHuman and
+     * isMCTS, which picks Monte Carlo Tree Search as the computer engine
      */
     private void setPlayAsRow() {
         HBox playAs = new HBox();
@@ -101,14 +107,29 @@ public class NetworkWindow extends Stage {
         human.setToggleGroup(playAsToggle);
         human.setText("Human");
         human.setSelected(true);
-        human.setOnAction(actionEvent -> isHuman = true);
+        human.setOnAction(actionEvent -> {
+            isHuman = true;
+            isMCTS = false;
+        });
 
         // computer toggle
         RadioButton computer = new RadioButton();
         computer.setToggleGroup(playAsToggle);
         computer.setText("Computer");
-        computer.setOnAction(actionEvent -> isHuman = false);
-        playAs.getChildren().addAll(playAsLabel, human, computer);
+        computer.setOnAction(actionEvent -> {
+            isHuman = false;
+            isMCTS = false;
+        });
+
+        // monte carlo computer toggle
+        RadioButton computerMCTS = new RadioButton();
+        computerMCTS.setToggleGroup(playAsToggle);
+        computerMCTS.setText("Computer (MCTS)");
+        computerMCTS.setOnAction(actionEvent -> {
+            isHuman = false;
+            isMCTS = true;
+        });
+        playAs.getChildren().addAll(playAsLabel, human, computer, computerMCTS);
         networkBox.getChildren().add(playAs);
     }
 
@@ -146,15 +167,66 @@ public class NetworkWindow extends Stage {
         portTextAndLabel.setSpacing(8);
         Label portLabel = new Label("Port");
         TextField portTextField = new TextField(String.valueOf(port));
+        portTextField.setTextFormatter(new TextFormatter<>(integerFilter()));
+        // update port state
+        portTextField.setOnKeyTyped(keyEvent -> port = portTextField.getText());
+        portTextAndLabel.getChildren().addAll(portLabel, portTextField);
+    }
+
+    /**
+     * This method sets the Board row with the rows, columns and line length of the board. Each textfield only takes
+     * integers and updates its field every time the textbox changes like the port textfield
+     */
+    private void setBoardRow() {
+        HBox board = new HBox();
+        board.setSpacing(8);
+        Label boardLabel = new Label("Board: ");
+        TextField rowsTextField = new TextField(rows);
+        rowsTextField.setPrefColumnCount(2);
+        rowsTextField.setTextFormatter(new TextFormatter<>(integerFilter()));
+        rowsTextField.setOnKeyTyped(keyEvent -> rows = rowsTextField.getText());
+        TextField columnsTextField = new TextField(columns);
+        columnsTextField.setPrefColumnCount(2);
+        columnsTextField.setTextFormatter(new TextFormatter<>(integerFilter()));
+        columnsTextField.setOnKeyTyped(keyEvent -> columns = columnsTextField.getText());
+        TextField connectTextField = new TextField(connect);
+        connectTextField.setPrefColumnCount(2);
+        connectTextField.setTextFormatter(new TextFormatter<>(integerFilter()));
+        connectTextField.setOnKeyTyped(keyEvent -> connect = connectTextField.getText());
+        board.getChildren().addAll(boardLabel, rowsTextField, new Label("rows"), columnsTextField,
+                new Label("columns, connect"), connectTextField);
+        networkBox.getChildren().add(board);
+    }
+
+    /**
+     * Returns a filter for textfields that only lets digits through
+     *
+     * @return - UnaryOperator that drops a change if its new text is not a digit
+     */
+    private static UnaryOperator<TextFormatter.Change> integerFilter() {
         // if new text is not a digit don't update textfield
-        UnaryOperator<TextFormatter.Change> integerFilter = change -> {
+        return change -> {
             String input = change.getText();
             return input.matches("[0-9]*") ? change : null;
         };
-        portTextField.setTextFormatter(new TextFormatter<>(integerFilter));
-        // update port state
-        portTextField.setOnKeyTyped(keyEvent -> port = portTextField.getText());
-        portTextAndLabel.getChildren().addAll(portLabel, portTextField);
+    }
+
+    /**
+     * This method passes the board from the Board row to the controller. A board that doesn't exist is shown in an
+     * error alert and the window stays open so it can be fixed
+     *
+     * @return - true if the board was set else false
+     */
+    private boolean setBoard() {
+        try {
+            controller.setBoard(Integer.parseInt(rows), Integer.parseInt(columns), Integer.parseInt(connect));
+            return true;
+        } catch (IllegalArgumentException e) {
+            Alert alert = new Alert(Alert.AlertType.ERROR);
+            alert.setContentText("That board doesn't exist. " + e.getMessage());
+            alert.show();
+            return false;
+        }
     }
 
     /**
@@ -167,6 +239,8 @@ public class NetworkWindow extends Stage {
         Button ok = new Button("OK");
         // call method to notify controller
         ok.setOnAction(actionEvent -> {
+            if (!setBoard())
+                return;
         	controller.newGameReset();
             startNetworkConnections();
             this.close();
@@ -174,6 +248,8 @@ public class NetworkWindow extends Stage {
         // call method to notify controller
         Button cancel = new Button("Cancel");
         cancel.setOnAction(actionEvent -> {
+            if (!setBoard())
+                return;
         	controller.newGameReset();
             startNetworkConnections();
             this.close();
@@ -190,6 +266,8 @@ public class NetworkWindow extends Stage {
     private void startNetworkConnections() {
         controller.setPort(Integer.parseInt(port));
         controller.setServer(server);
+        controller.setComputerPlayer(!isHuman);
+        controller.setMCTS(isMCTS);
         if (isServer)
             controller.startServer();
         else {
@@ -204,8 +282,8 @@ public class NetworkWindow extends Stage {
     private void setStage() {
         this.setMaxWidth(500);
         this.setMinWidth(500);
-        this.setMaxHeight(200);
-        this.setMinHeight(200);
+        this.setMaxHeight(240);
+        this.setMinHeight(240);
     }
 
     /**